@@ -1,5 +1,6 @@
 package proj.concert.webapp;
 
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,11 +44,11 @@ public class BookingServlet extends HttpServlet {
         long concertId = Long.parseLong(req.getParameter("concertId"));
         LocalDateTime date = LocalDateTime.parse(req.getParameter("date"), FORMATTER);
 
-        Client wsClient = ClientBuilder.newClient();
+        Client wsClient = ClientBuilder.newClient().register(JacksonSmileProvider.class);
         try {
             // Grab the concert
             ConcertDTO concert = wsClient.target(Config.WEB_SERVICE_URI + "/concerts/" + concertId)
-                    .request().get(ConcertDTO.class);
+                    .request(Config.WIRE_FORMAT).get(ConcertDTO.class);
 
 
             // If the date is invalid for that concert, get outta here.
@@ -59,7 +60,7 @@ public class BookingServlet extends HttpServlet {
 
             // Go get the already-booked seats from the web service, so we can mark them as such on the app.
             List<SeatDTO> bookedSeats = wsClient.target(Config.WEB_SERVICE_URI + "/seats/" + FORMATTER.format(date) + "?status=Booked")
-                    .request().get(new GenericType<List<SeatDTO>>() {
+                    .request(Config.WIRE_FORMAT).get(new GenericType<List<SeatDTO>>() {
                     });
             LOGGER.info("doGet(): bookedSeats size = " + bookedSeats.size());
 
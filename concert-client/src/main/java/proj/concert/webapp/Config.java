@@ -1,5 +1,9 @@
 package proj.concert.webapp;
 
+import com.fasterxml.jackson.jaxrs.smile.SmileMediaTypes;
+
+import javax.ws.rs.core.MediaType;
+
 public class Config {
 
     /**
@@ -8,5 +12,11 @@ public class Config {
      */
     public static final String WEB_SERVICE_URI = "http://localhost:10000/webservice/services/concert-service";
 
+    /**
+     * The format DTOs are exchanged with the web service in. Jackson's binary Smile format is smaller and cheaper to
+     * parse than JSON; clients must register JacksonSmileProvider to use it.
+     */
+    public static final MediaType WIRE_FORMAT = SmileMediaTypes.APPLICATION_JACKSON_SMILE_TYPE;
+
     private Config() {}
 }
@@ -1,5 +1,6 @@
 package proj.concert.webapp;
 
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,10 +32,10 @@ public class LoginServlet extends HttpServlet {
 
         UserDTO user = new UserDTO(username, password);
 
-        Client wsClient = ClientBuilder.newClient();
+        Client wsClient = ClientBuilder.newClient().register(JacksonSmileProvider.class);
         try {
             Response wsResponse = wsClient.target(Config.WEB_SERVICE_URI + "/login")
-                    .request().post(Entity.json(user));
+                    .request(Config.WIRE_FORMAT).post(Entity.entity(user, Config.WIRE_FORMAT));
 
             LOGGER.info("LoginServlet: Status from web service : " + wsResponse.getStatus());
 
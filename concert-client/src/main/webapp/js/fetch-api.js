@@ -18,6 +18,21 @@ export const FetchAPI = {
         return this.post(`${WEB_URI}/bookings`, bookingRequest);
     },
 
+    holdSeats(holdRequest) {
+        return this.post(`${WEB_URI}/holds`, holdRequest);
+    },
+
+    releaseHold(id) {
+        return fetch(`${WEB_URI}/holds/${id}`, {
+            method: "DELETE",
+            credentials: "same-origin"
+        });
+    },
+
+    openSeatEvents(date) {
+        return new EventSource(`${WEB_URI}/seats/${date}/events`);
+    },
+
     post(url, body) {
         return fetch(url, {
             method: "POST",
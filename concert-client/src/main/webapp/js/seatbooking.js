@@ -17,18 +17,60 @@ export function initSeatBookingPage(concertId, concertDate) {
     // Setup "buy" button
     document.querySelector("#button-book").addEventListener("click", handleBookButtonClicked);
 
+    // Mark seats as booked as soon as anyone else books them, rather than polling for them
+    const seatEvents = FetchAPI.openSeatEvents(concertDate);
+    seatEvents.addEventListener("seats", handleSeatEvent);
+    window.addEventListener("beforeunload", () => seatEvents.close());
+
     /**
-     * Whenever a seat is clicked, if that seat isn't already booked, toggle its "held" status.
+     * Whenever a seat is clicked, if that seat isn't already booked, toggle its "held" status. Selecting a seat holds
+     * it on the server so nobody else can book it while this user finishes their booking, and deselecting it releases
+     * the hold. Seats someone else is holding can't be selected.
      */
-    function handleSeatClicked() {
+    async function handleSeatClicked() {
         const seatDiv = this;
         const seat = seatDiv.seat;
 
-        if (!seat.isBooked) {
-            SeatUI.toggleHeld(seat);
+        if (seat.isBooked) {
+            return;
+        }
 
-            displayTotals();
+        if (seat.isHeld) {
+            if (seat.holdId) {
+                FetchAPI.releaseHold(seat.holdId);
+                seat.holdId = null;
+            }
+        }
+        else {
+            const response = await FetchAPI.holdSeats({
+                concertId: concertId,
+                date: concertDate,
+                seatLabels: [seat.label]
+            });
+
+            // Only a seat the server has actually held for us is shown as held
+            if (response.status !== 201) {
+                return;
+            }
+            seat.holdId = (await response.json()).id;
         }
+
+        SeatUI.toggleHeld(seat);
+        displayTotals();
+    }
+
+    /**
+     * Whenever seats are booked for this concert date, mark them as booked and release them if they were held.
+     */
+    function handleSeatEvent(event) {
+        const availability = JSON.parse(event.data);
+        const newlyBooked = SeatData.getSeatsByLabel(seats, ...availability.bookedSeatLabels)
+            .filter(seat => !seat.isBooked);
+
+        SeatUI.toggleHeld(...newlyBooked.filter(seat => seat.isHeld));
+        SeatUI.toggleBooked(...newlyBooked);
+
+        displayTotals();
     }
 
     /**
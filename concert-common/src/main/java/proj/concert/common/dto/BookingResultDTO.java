@@ -0,0 +1,36 @@
+package proj.concert.common.dto;
+
+/**
+ * Represents the outcome of one booking request submitted as part of a batch.
+ * status     the HTTP status the booking would have received had it been submitted on its own, e.g. 201 or 403
+ * location   the URI of the created booking, or null if the booking was not made
+ */
+public class BookingResultDTO {
+
+    private int status;
+    private String location;
+
+    public BookingResultDTO() {
+    }
+
+    public BookingResultDTO(int status, String location) {
+        this.status = status;
+        this.location = location;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+}
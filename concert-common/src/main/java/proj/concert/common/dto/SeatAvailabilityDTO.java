@@ -0,0 +1,70 @@
+package proj.concert.common.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import proj.concert.common.jackson.LocalDateTimeDeserializer;
+import proj.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a live update about seat availability for a concert on a particular date, pushed to clients listening
+ * to the seat event stream.
+ * date                the date of the particular performance
+ * bookedSeatLabels    the seats which have just been booked (empty for the initial update sent on connection)
+ * numSeatsRemaining   the number of seats still available after those bookings
+ * numSeatsTotal       the total number of seats in the theatre
+ */
+public class SeatAvailabilityDTO {
+
+    private LocalDateTime date;
+    private List<String> bookedSeatLabels = new ArrayList<>();
+    private int numSeatsRemaining;
+    private int numSeatsTotal;
+
+    public SeatAvailabilityDTO() {
+    }
+
+    public SeatAvailabilityDTO(LocalDateTime date, List<String> bookedSeatLabels, int numSeatsRemaining, int numSeatsTotal) {
+        this.date = date;
+        this.bookedSeatLabels = bookedSeatLabels;
+        this.numSeatsRemaining = numSeatsRemaining;
+        this.numSeatsTotal = numSeatsTotal;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public List<String> getBookedSeatLabels() {
+        return bookedSeatLabels;
+    }
+
+    public void setBookedSeatLabels(List<String> bookedSeatLabels) {
+        this.bookedSeatLabels = bookedSeatLabels;
+    }
+
+    public int getNumSeatsRemaining() {
+        return numSeatsRemaining;
+    }
+
+    public void setNumSeatsRemaining(int numSeatsRemaining) {
+        this.numSeatsRemaining = numSeatsRemaining;
+    }
+
+    public int getNumSeatsTotal() {
+        return numSeatsTotal;
+    }
+
+    public void setNumSeatsTotal(int numSeatsTotal) {
+        this.numSeatsTotal = numSeatsTotal;
+    }
+}
@@ -0,0 +1,82 @@
+package proj.concert.common.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import proj.concert.common.jackson.LocalDateTimeDeserializer;
+import proj.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents seats temporarily reserved for a user while they complete a booking.
+ * id           the unique identifier for the hold
+ * concertId    the id of the concert whose seats are held
+ * date         the date on which the seats are held
+ * seatLabels   the seats which are held
+ * expiry       the time at which the hold lapses if the seats have not been booked
+ */
+public class SeatHoldDTO {
+
+    private long id;
+    private long concertId;
+    private LocalDateTime date;
+    private List<String> seatLabels = new ArrayList<>();
+    private LocalDateTime expiry;
+
+    public SeatHoldDTO() {
+    }
+
+    public SeatHoldDTO(long id, long concertId, LocalDateTime date, List<String> seatLabels, LocalDateTime expiry) {
+        this.id = id;
+        this.concertId = concertId;
+        this.date = date;
+        this.seatLabels = seatLabels;
+        this.expiry = expiry;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public void setConcertId(long concertId) {
+        this.concertId = concertId;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public List<String> getSeatLabels() {
+        return seatLabels;
+    }
+
+    public void setSeatLabels(List<String> seatLabels) {
+        this.seatLabels = seatLabels;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getExpiry() {
+        return expiry;
+    }
+
+    public void setExpiry(LocalDateTime expiry) {
+        this.expiry = expiry;
+    }
+}
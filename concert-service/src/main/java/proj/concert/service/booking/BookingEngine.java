@@ -0,0 +1,376 @@
+package proj.concert.service.booking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import proj.concert.common.dto.BookingRequestDTO;
+import proj.concert.service.common.Config;
+import proj.concert.service.domain.Booking;
+import proj.concert.service.domain.Seat;
+import proj.concert.service.domain.User;
+import proj.concert.service.inventory.DateInventory;
+import proj.concert.service.inventory.SeatInventory;
+import proj.concert.service.services.PersistenceManager;
+import proj.concert.service.util.TheatreLayout;
+
+import javax.persistence.EntityManager;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static proj.concert.service.util.ConcertResourceUtils.findConcert;
+import static proj.concert.service.util.ConcertResourceUtils.publishBookedSeats;
+import static proj.concert.service.util.ConcertResourceUtils.translateSeatConflict;
+
+/**
+ * Singleton that writes every booking for a concert date from a single writer. Requests are queued on a lane per
+ * date, and each lane drains its queue on a shared pool, so at most one thread ever books seats for a given date
+ * while different dates are booked in parallel. Seats are keyed by date alone, so a date is the unit of ownership
+ * even when more than one concert shares it.
+ * <p>
+ * Because a lane is the only writer for its date, its {@link DateInventory} is authoritative: requests are checked
+ * against it without locking any seat rows, and queued requests are committed together in one transaction of up to
+ * {@link Config#BOOKING_ENGINE_BATCH_SIZE} bookings.
+ */
+public class BookingEngine {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(BookingEngine.class);
+
+    private static BookingEngine instance = null;
+
+    private final Map<LocalDateTime, Lane> lanes = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    protected BookingEngine() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Config.BOOKING_ENGINE_THREADS, r -> {
+            Thread thread = new Thread(r, "booking-engine-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static synchronized BookingEngine instance() {
+        if (instance == null) {
+            instance = new BookingEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a booking with the writer for its date. The future completes with the committed booking, or
+     * exceptionally with a {@link WebApplicationException} if the booking was rejected. Cancelling the future
+     * withdraws the booking, unless the writer has already started on it.
+     */
+    public CompletableFuture<Booking> submit(long userId, BookingRequestDTO bReq) {
+        PendingBooking pending = new PendingBooking(userId, bReq);
+        lanes.computeIfAbsent(bReq.getDate(), Lane::new).enqueue(pending);
+        return pending;
+    }
+
+    /**
+     * As {@link #submit(long, BookingRequestDTO)}, but waits for the booking to be written and rethrows the
+     * exception that rejected it, if any.
+     */
+    public Booking book(long userId, BookingRequestDTO bReq) {
+        return await(submit(userId, bReq));
+    }
+
+    /**
+     * Waits at most {@link Config#BOOKING_ENGINE_TIMEOUT_MILLIS} for a submitted booking and rethrows the exception
+     * that rejected it, if any. If the booking has not been written in time it is withdrawn and a 503 Service
+     * Unavailable is thrown, so a booking reported as failed is never committed later. A booking the writer has
+     * already started on cannot be withdrawn, so its outcome is waited for instead.
+     */
+    public Booking await(CompletableFuture<Booking> result) {
+        try {
+            return result.get(Config.BOOKING_ENGINE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (TimeoutException e) {
+            LOGGER.warn("await(): Timed out waiting for a booking to be written");
+            return withdrawOrJoin(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return withdrawOrJoin(result);
+        }
+    }
+
+    private Booking withdrawOrJoin(CompletableFuture<Booking> result) {
+        if (result.cancel(false)) {
+            throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        throw new IllegalStateException(cause);
+    }
+
+    /**
+     * Checks and commits a batch of bookings for one date in a single transaction. Requests that are invalid, or that
+     * ask for seats booked earlier in the same batch, are rejected individually without affecting the rest. If the
+     * transaction fails, each booking is retried in a transaction of its own, so that one bad booking cannot fail the
+     * others. Bookings that were withdrawn while queued are skipped.
+     */
+    private void writeBatch(LocalDateTime date, List<PendingBooking> batch) {
+        List<PendingBooking> accepted = check(date, batch);
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        try {
+            write(date, accepted);
+            LOGGER.debug("writeBatch(): Committed " + accepted.size() + " of " + batch.size() + " bookings for " + date);
+        } catch (RuntimeException e) {
+            if (accepted.size() == 1) {
+                LOGGER.error("writeBatch(): Failed to commit booking for " + date, e);
+                accepted.get(0).completeExceptionally(e);
+                return;
+            }
+
+            LOGGER.warn("writeBatch(): Failed to commit " + accepted.size() + " bookings for " + date + ", retrying them one at a time", e);
+            for (PendingBooking pending : accepted) {
+                if (pending.isDone()) {
+                    continue;
+                }
+                try {
+                    write(date, Collections.singletonList(pending));
+                } catch (RuntimeException retryException) {
+                    LOGGER.error("writeBatch(): Failed to commit booking for " + date, retryException);
+                    pending.completeExceptionally(retryException);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the bookings in the batch that can be made, and rejects the others. Bookings that have been withdrawn
+     * are left out, and the rest can no longer be withdrawn.
+     */
+    private List<PendingBooking> check(LocalDateTime date, List<PendingBooking> batch) {
+        List<PendingBooking> accepted = new ArrayList<PendingBooking>();
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+
+        try {
+            BitSet batchSeats = new BitSet(TheatreLayout.NUM_SEATS_IN_THEATRE);
+            for (PendingBooking pending : batch) {
+                if (!pending.start()) {
+                    continue;
+                }
+                try {
+                    int[] seats = SeatInventory.instance().checkBookable(date, pending.request.getSeatLabels());
+                    for (int seat : seats) {
+                        if (batchSeats.get(seat)) {
+                            throw new WebApplicationException(Response.Status.FORBIDDEN);
+                        }
+                    }
+                    findConcert(em, pending.request.getConcertId(), "POST");
+
+                    for (int seat : seats) {
+                        batchSeats.set(seat);
+                    }
+                    pending.seats = seats;
+                    accepted.add(pending);
+                } catch (WebApplicationException e) {
+                    pending.completeExceptionally(e);
+                }
+            }
+        } finally {
+            em.close();
+        }
+        return accepted;
+    }
+
+    /**
+     * Commits the given bookings in one transaction, then marks their seats booked, tells subscribers and seat
+     * listeners about them and completes them. A booking
+     * whose seats have no rows in the database is rejected with a 400 Bad Request. If the transaction fails the
+     * exception is thrown, as a 403 Forbidden if a seat row already existed in sparse mode, and the bookings that
+     * were not rejected are left for the caller to complete.
+     */
+    private void write(LocalDateTime date, List<PendingBooking> bookings) {
+        List<PendingBooking> written = new ArrayList<PendingBooking>();
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+
+        try {
+            em.getTransaction().begin();
+
+            // Load the seats for all the bookings in one statement. No lock is needed as nobody else writes this date.
+            Map<String, Seat> seatsByLabel = new HashMap<String, Seat>();
+            if (!Config.SPARSE_SEAT_INVENTORY) {
+                Set<String> labels = new HashSet<String>();
+                for (PendingBooking pending : bookings) {
+                    labels.addAll(pending.request.getSeatLabels());
+                }
+                for (Seat seat : em
+                        .createNamedQuery(Seat.FIND_BY_LABELS, Seat.class)
+                        .setParameter("labels", labels)
+                        .setParameter("date", date)
+                        .getResultList()) {
+                    seatsByLabel.put(seat.getLabel(), seat);
+                }
+            }
+
+            for (PendingBooking pending : bookings) {
+                if (!Config.SPARSE_SEAT_INVENTORY && !seatsByLabel.keySet().containsAll(pending.request.getSeatLabels())) {
+                    LOGGER.warn("write(): No seat rows for some of " + pending.request.getSeatLabels() + " on " + date);
+                    pending.completeExceptionally(new WebApplicationException(Response.Status.BAD_REQUEST));
+                    continue;
+                }
+
+                ArrayList<Seat> seats = new ArrayList<Seat>();
+                for (String label : pending.request.getSeatLabels()) {
+                    Seat seat;
+                    if (Config.SPARSE_SEAT_INVENTORY) {
+                        // Only booked seats have rows; the inventory has already checked that these are free
+                        seat = TheatreLayout.createBookedSeat(label, date);
+                        em.persist(seat);
+                    } else {
+                        seat = seatsByLabel.get(label);
+                        seat.setBookingStatus(true);
+                    }
+                    seats.add(seat);
+                }
+
+                Booking booking = new Booking(pending.request.getConcertId(), date, seats);
+                booking.setUser(em.getReference(User.class, pending.userId));
+                em.persist(booking);
+                pending.booking = booking;
+                written.add(pending);
+            }
+
+            em.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw translateSeatConflict(e);
+        } finally {
+            em.close();
+        }
+
+        DateInventory inventory = SeatInventory.instance().get(date);
+        Map<Long, List<String>> bookedLabels = new LinkedHashMap<Long, List<String>>();
+        for (PendingBooking pending : written) {
+            for (int seat : pending.seats) {
+                inventory.markBooked(seat);
+            }
+            List<String> labels = bookedLabels.computeIfAbsent(pending.request.getConcertId(), id -> new ArrayList<String>());
+            labels.addAll(pending.request.getSeatLabels());
+        }
+
+        // Published here rather than by the requests, so that every commit is heard about even if nobody waits for it
+        for (Map.Entry<Long, List<String>> concert : bookedLabels.entrySet()) {
+            publishBookedSeats(concert.getKey(), date, concert.getValue());
+        }
+        for (PendingBooking pending : written) {
+            pending.complete(pending.booking);
+        }
+    }
+
+    /**
+     * The queue of bookings for one date. A lane is scheduled on the pool whenever it has work and is not already
+     * running, so its bookings are always written one batch at a time.
+     */
+    private class Lane implements Runnable {
+
+        private final LocalDateTime date;
+        private final Queue<PendingBooking> queue = new ConcurrentLinkedQueue<PendingBooking>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Lane(LocalDateTime date) {
+            this.date = date;
+        }
+
+        void enqueue(PendingBooking pending) {
+            queue.add(pending);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<PendingBooking> batch = new ArrayList<PendingBooking>();
+            PendingBooking next;
+            while (batch.size() < Config.BOOKING_ENGINE_BATCH_SIZE && (next = queue.poll()) != null) {
+                batch.add(next);
+            }
+
+            try {
+                if (!batch.isEmpty()) {
+                    writeBatch(date, batch);
+                }
+            } finally {
+                scheduled.set(false);
+                // Pick up bookings that arrived while this batch was being written
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+
+    /**
+     * A queued booking, which is also the future its requester waits on. It can be cancelled until the writer starts
+     * on it, and not after.
+     */
+    private static class PendingBooking extends CompletableFuture<Booking> {
+
+        private final long userId;
+        private final BookingRequestDTO request;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private int[] seats;
+        private Booking booking;
+
+        PendingBooking(long userId, BookingRequestDTO request) {
+            this.userId = userId;
+            this.request = request;
+        }
+
+        /**
+         * Claims the booking for the writer, or returns false if it has already been cancelled.
+         */
+        boolean start() {
+            return started.compareAndSet(false, true);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return started.compareAndSet(false, true) && super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
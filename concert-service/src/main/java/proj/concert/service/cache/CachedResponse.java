@@ -0,0 +1,109 @@
+package proj.concert.service.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import proj.concert.service.common.Config;
+import proj.concert.service.jaxrs.WireFormats;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A response body that has already been serialised, in each of the {@link WireFormats}, together with a strong
+ * {@link EntityTag} derived from the bytes of each. Bodies of at least {@link Config#GZIP_MIN_BYTES} are also kept
+ * gzip-compressed. Cached responses are written straight to the client, so Jackson and gzip only run once per
+ * snapshot and format.
+ */
+public class CachedResponse {
+
+    private final Body json;
+    private final Body smile;
+
+    private CachedResponse(Body json, Body smile) {
+        this.json = json;
+        this.smile = smile;
+    }
+
+    /**
+     * Serialises the given entity to JSON and to Smile.
+     */
+    public static CachedResponse of(Object entity) {
+        return new CachedResponse(
+                new Body(serialise(entity, MediaType.APPLICATION_JSON_TYPE)),
+                new Body(serialise(entity, WireFormats.APPLICATION_SMILE_TYPE)));
+    }
+
+    /**
+     * Returns the body serialised in the given format. The array is shared and must not be modified.
+     */
+    public byte[] getBody(MediaType type) {
+        return bodyFor(type).bytes;
+    }
+
+    /**
+     * Returns the gzip-compressed body in the given format, or null if the body is too small to be compressed. The
+     * array is shared and must not be modified.
+     */
+    public byte[] getGzipBody(MediaType type) {
+        return bodyFor(type).gzipBytes;
+    }
+
+    public EntityTag getEntityTag(MediaType type) {
+        return bodyFor(type).entityTag;
+    }
+
+    private Body bodyFor(MediaType type) {
+        return WireFormats.isSmile(type) ? smile : json;
+    }
+
+    private static byte[] serialise(Object entity, MediaType type) {
+        try {
+            return WireFormats.mapperFor(type).writeValueAsBytes(entity);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialise cached response", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        if (body.length < Config.GZIP_MIN_BYTES) {
+            return null;
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not compress cached response", e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static class Body {
+        private final byte[] bytes;
+        private final byte[] gzipBytes;
+        private final EntityTag entityTag;
+
+        private Body(byte[] bytes) {
+            this.bytes = bytes;
+            this.gzipBytes = gzip(bytes);
+            this.entityTag = new EntityTag(digest(bytes));
+        }
+    }
+
+    private static String digest(byte[] body) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(body)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
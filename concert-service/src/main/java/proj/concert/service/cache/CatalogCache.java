@@ -0,0 +1,86 @@
+package proj.concert.service.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import proj.concert.common.dto.ConcertDTO;
+import proj.concert.service.domain.Concert;
+import proj.concert.service.mapper.ConcertMapper;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static proj.concert.service.util.ConcertResourceUtils.findAllConcerts;
+import static proj.concert.service.util.ConcertResourceUtils.getAllDtoPerformers;
+
+/**
+ * Singleton read-through cache for the concert catalog. The first request after start-up (or after the catalog has
+ * been invalidated) builds a {@link CatalogSnapshot} from the database; every later request is served that same
+ * snapshot until {@link #invalidate()} is called.
+ * <p>
+ * Building and invalidating are serialised, so a snapshot that was being built while the catalog changed can never
+ * be published after the invalidation.
+ */
+public class CatalogCache {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(CatalogCache.class);
+
+    private static CatalogCache instance = null;
+
+    private volatile CatalogSnapshot snapshot = null;
+    private long version = 0;
+
+    protected CatalogCache() {
+    }
+
+    public static synchronized CatalogCache instance() {
+        if (instance == null) {
+            instance = new CatalogCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the current catalog snapshot, building it with the given EntityManager if there is none.
+     */
+    public CatalogSnapshot get(EntityManager em) {
+        CatalogSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = build(em, ++version);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Discards the current snapshot. Must be called whenever concerts or performers are changed.
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    private static CatalogSnapshot build(EntityManager em, long version) {
+        LOGGER.debug("build(): Building catalog snapshot version " + version);
+
+        em.getTransaction().begin();
+        try {
+            List<ConcertDTO> concerts = new ArrayList<ConcertDTO>();
+            for (Concert concert : findAllConcerts(em)) {
+                concerts.add(ConcertMapper.toDto(concert));
+            }
+            CatalogSnapshot built = new CatalogSnapshot(version, concerts, getAllDtoPerformers(em));
+            em.getTransaction().commit();
+            return built;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        }
+    }
+}
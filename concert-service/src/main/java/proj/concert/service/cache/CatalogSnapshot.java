@@ -0,0 +1,119 @@
+package proj.concert.service.cache;
+
+import proj.concert.common.dto.ConcertDTO;
+import proj.concert.common.dto.ConcertSummaryDTO;
+import proj.concert.common.dto.PerformerDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable copy of the concert catalog as DTOs, tagged with the version of the catalog it was built from.
+ * Snapshots are shared between requests, so nothing reachable from one may be modified after it has been built.
+ */
+public class CatalogSnapshot {
+
+    private final long version;
+    private final List<ConcertDTO> concerts;
+    private final List<ConcertSummaryDTO> concertSummaries;
+    private final List<PerformerDTO> performers;
+    private final NavigableMap<Long, ConcertDTO> concertsById = new TreeMap<Long, ConcertDTO>();
+    private final NavigableMap<Long, PerformerDTO> performersById = new TreeMap<Long, PerformerDTO>();
+    private final Map<String, CachedResponse> responses = new ConcurrentHashMap<String, CachedResponse>();
+
+    public CatalogSnapshot(long version, List<ConcertDTO> concerts, List<PerformerDTO> performers) {
+        this.version = version;
+        this.concerts = Collections.unmodifiableList(new ArrayList<ConcertDTO>(concerts));
+        this.performers = Collections.unmodifiableList(new ArrayList<PerformerDTO>(performers));
+
+        List<ConcertSummaryDTO> summaries = new ArrayList<ConcertSummaryDTO>();
+        for (ConcertDTO concert : concerts) {
+            summaries.add(new ConcertSummaryDTO(concert.getId(), concert.getTitle(), concert.getImageName()));
+            concertsById.put(concert.getId(), concert);
+        }
+        this.concertSummaries = Collections.unmodifiableList(summaries);
+
+        for (PerformerDTO performer : performers) {
+            performersById.put(performer.getId(), performer);
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<ConcertDTO> getConcerts() {
+        return concerts;
+    }
+
+    public List<ConcertSummaryDTO> getConcertSummaries() {
+        return concertSummaries;
+    }
+
+    public List<PerformerDTO> getPerformers() {
+        return performers;
+    }
+
+    /**
+     * Returns up to limit concerts whose ids follow the given id, in id order. Pages are found by seeking to the id
+     * rather than by position, so a page costs the same wherever it starts.
+     */
+    public List<ConcertDTO> getConcertsAfter(long after, int limit) {
+        return page(concertsById, after, limit);
+    }
+
+    /**
+     * Returns up to limit performers whose ids follow the given id, in id order.
+     */
+    public List<PerformerDTO> getPerformersAfter(long after, int limit) {
+        return page(performersById, after, limit);
+    }
+
+    public boolean hasConcertsAfter(long id) {
+        return concertsById.higherKey(id) != null;
+    }
+
+    public boolean hasPerformersAfter(long id) {
+        return performersById.higherKey(id) != null;
+    }
+
+    /**
+     * Returns the serialised form of an entity taken from this snapshot, serialising it the first time it is asked for.
+     *
+     * @param key    a name that uniquely identifies the entity within the snapshot, e.g. its resource path
+     * @param entity the entity to serialise if it has not been already
+     */
+    public CachedResponse getResponse(String key, Object entity) {
+        return responses.computeIfAbsent(key, k -> CachedResponse.of(entity));
+    }
+
+    /**
+     * Returns the concert with the given id, or null if there is no such concert.
+     */
+    public ConcertDTO getConcert(long id) {
+        return concertsById.get(id);
+    }
+
+    /**
+     * Returns the performer with the given id, or null if there is no such performer.
+     */
+    public PerformerDTO getPerformer(long id) {
+        return performersById.get(id);
+    }
+
+    private static <T> List<T> page(NavigableMap<Long, T> byId, long after, int limit) {
+        List<T> page = new ArrayList<T>(limit);
+        for (T entity : byId.tailMap(after, false).values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(entity);
+        }
+        return Collections.unmodifiableList(page);
+    }
+}
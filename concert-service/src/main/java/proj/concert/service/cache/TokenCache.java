@@ -0,0 +1,78 @@
+package proj.concert.service.cache;
+
+import proj.concert.service.common.Config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton cache mapping authentication tokens to the id of the user they were issued to, so that repeat requests
+ * from the same session can be authenticated without querying the USERS table.
+ * <p>
+ * Entries are added when a login commits and removed when the user's token is replaced. Entries also expire after
+ * {@link Config#TOKEN_CACHE_TTL_MILLIS} so a token is never trusted for longer than that without being re-checked.
+ * <p>
+ * A lookup that read a user's old token from the database just before a login replaced it could otherwise put that
+ * token back after the login removed it. The cache therefore remembers the latest token issued to each user, and
+ * refuses to cache any other token for them. Both updates run atomically per user.
+ */
+public class TokenCache {
+
+    private static TokenCache instance = null;
+
+    private final ExpiringLruCache<String, Long> users =
+            new ExpiringLruCache<String, Long>(Config.TOKEN_CACHE_MAX_SIZE, Config.TOKEN_CACHE_TTL_MILLIS);
+    private final Map<Long, String> latestTokens = new ConcurrentHashMap<>();
+
+    protected TokenCache() {
+    }
+
+    public static synchronized TokenCache instance() {
+        if (instance == null) {
+            instance = new TokenCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the id of the user holding the token, or null if the token is not cached.
+     */
+    public Long getUserId(String token) {
+        return token == null ? null : users.get(token);
+    }
+
+    /**
+     * Caches a token found in the database, unless a later login has already replaced it.
+     */
+    public void put(String token, Long userId) {
+        latestTokens.compute(userId, (id, latest) -> {
+            if (latest == null || latest.equals(token)) {
+                users.put(token, id);
+            }
+            return latest;
+        });
+    }
+
+    /**
+     * Records that a login has committed a new token for the user, dropping the token it replaced.
+     *
+     * @param previousToken the token the login replaced, or null if the user had none
+     */
+    public void replace(Long userId, String previousToken, String token) {
+        latestTokens.compute(userId, (id, latest) -> {
+            if (previousToken != null) {
+                users.invalidate(previousToken);
+            }
+            if (latest != null) {
+                users.invalidate(latest);
+            }
+            users.put(token, id);
+            return token;
+        });
+    }
+
+    public void clear() {
+        users.clear();
+        latestTokens.clear();
+    }
+}
@@ -5,4 +5,138 @@ public class Config {
      * Name of a cookie exchanged by clients and the Web service.
      */
     public static final String CLIENT_COOKIE = "auth";
+
+    /**
+     * Maximum number of authentication tokens held in the token cache.
+     */
+    public static final int TOKEN_CACHE_MAX_SIZE = 10000;
+
+    /**
+     * How long a cached authentication token is trusted before it must be checked against the database again.
+     */
+    public static final long TOKEN_CACHE_TTL_MILLIS = 30 * 60 * 1000;
+
+    /**
+     * Number of threads delivering concert info notifications to subscribers.
+     */
+    public static final int NOTIFICATION_DISPATCHER_THREADS = 4;
+
+    /**
+     * Maximum number of notification batches waiting for a dispatcher thread.
+     */
+    public static final int NOTIFICATION_QUEUE_CAPACITY = 1000;
+
+    /**
+     * Maximum number of seat event broadcasts waiting to be sent to server-sent event listeners.
+     */
+    public static final int SEAT_EVENT_QUEUE_CAPACITY = 1000;
+
+    /**
+     * How long a concert info subscription waits for a notification before it is answered with 204 No Content. Start
+     * the service with -Dconcert.subscriptions.timeout=60 to time out after a minute instead.
+     */
+    public static final long SUBSCRIPTION_TIMEOUT_SECONDS = Long.getLong("concert.subscriptions.timeout", 5 * 60);
+
+    /**
+     * Maximum number of outstanding concert info subscriptions held by a single user.
+     */
+    public static final int MAX_SUBSCRIPTIONS_PER_USER = 20;
+
+    /**
+     * Maximum number of outstanding concert info subscriptions across all users. Start the service with
+     * -Dconcert.subscriptions.max=1000 to allow only a thousand, for example.
+     */
+    public static final int MAX_SUBSCRIPTIONS = Integer.getInteger("concert.subscriptions.max", 50000);
+
+    /**
+     * How long seats reserved through the hold API stay reserved before they are released again.
+     */
+    public static final long SEAT_HOLD_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * How long a booking request may keep its seats claimed while it is being committed.
+     */
+    public static final long BOOKING_CLAIM_MILLIS = 30 * 1000;
+
+    /**
+     * Resolution of the timing wheel that expires seat holds.
+     */
+    public static final long SEAT_HOLD_TICK_MILLIS = 1000;
+
+    /**
+     * Number of buckets in the seat hold timing wheel. One revolution should cover the longest hold.
+     */
+    public static final int SEAT_HOLD_WHEEL_BUCKETS = 512;
+
+    /**
+     * Largest page of results a client may ask for from a paginated endpoint.
+     */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * Largest number of bookings a client may make in one batch request.
+     */
+    public static final int MAX_BOOKING_BATCH_SIZE = 100;
+
+    /**
+     * Smallest response body, in bytes, that is gzip-compressed for clients that accept it. Smaller bodies fit in a
+     * packet or two anyway, and compressing them costs more CPU than it saves in transfer time.
+     */
+    public static final int GZIP_MIN_BYTES = 1024;
+
+    /**
+     * Whether bookings are written by a single writer per concert date rather than by the request threads. Start the
+     * service with -Dconcert.booking.engine=false to book on the request threads with optimistic locking instead.
+     */
+    public static final boolean BOOKING_ENGINE_ENABLED =
+            Boolean.parseBoolean(System.getProperty("concert.booking.engine", "true"));
+
+    /**
+     * Number of threads writing bookings. Each concert date is only ever written by one of them at a time.
+     */
+    public static final int BOOKING_ENGINE_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Maximum number of queued bookings for a concert date committed together in one transaction.
+     */
+    public static final int BOOKING_ENGINE_BATCH_SIZE = 32;
+
+    /**
+     * How long a request waits for the booking engine to write its booking before giving up with 503 Service
+     * Unavailable. Kept well below {@link #BOOKING_CLAIM_MILLIS} so the seats stay claimed while the request waits.
+     */
+    public static final long BOOKING_ENGINE_TIMEOUT_MILLIS = 10 * 1000;
+
+    /**
+     * JDBC URL of the database behind the connection pool.
+     */
+    public static final String DATABASE_URL = "jdbc:h2:~/test;mv_store=false";
+
+    public static final String DATABASE_USER = "sa";
+
+    public static final String DATABASE_PASSWORD = "sa";
+
+    /**
+     * Whether only booked seats are stored in the SEATS table. When set, no seats are created for a concert date up
+     * front: the seat grid and prices come from {@link proj.concert.service.util.TheatreLayout}, and a seat's row is
+     * only inserted when it is booked. Enabled with the system property concert.seats.sparse=true.
+     */
+    public static final boolean SPARSE_SEAT_INVENTORY =
+            Boolean.parseBoolean(System.getProperty("concert.seats.sparse", "false"));
+
+    /**
+     * Maximum number of pooled database connections. Requests that need a connection while all of them are in use
+     * wait, so this bounds database concurrency independently of the number of Jetty threads.
+     */
+    public static final int CONNECTION_POOL_SIZE = 20;
+
+    /**
+     * How long a request waits for a pooled connection before failing.
+     */
+    public static final long CONNECTION_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * How long a connection may be out of the pool before a possible leak is logged.
+     */
+    public static final long CONNECTION_LEAK_THRESHOLD_MILLIS = 60 * 1000;
 }
@@ -2,6 +2,7 @@ package proj.concert.service.domain;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.hibernate.jpa.QueryHints;
 import proj.concert.common.jackson.LocalDateTimeDeserializer;
 import proj.concert.common.jackson.LocalDateTimeSerializer;
 
@@ -17,11 +18,27 @@ import java.util.List;
  * date        the date on which that concert was booked
  * seats       the seats which were booked for that concert on that date
  * user        the user associated with the booking
+ * <p>
+ * Bookings are listed per user, so they are indexed by USER_ID. The index also backs the foreign key to USERS.
  */
 @Entity(name = "BOOKING")
-@Table(name = "BOOKINGS")
+@Table(name = "BOOKINGS", indexes = {
+        @Index(name = "IDX_BOOKINGS_USER_ID", columnList = "USER_ID")
+})
+@NamedQueries({
+        @NamedQuery(name = Booking.FIND_SEATS_BY_USER,
+                query = "select b.id, b.concertId, b.date, s.label, s.price from BOOKING b left join b.seats s " +
+                        "where b.user.id=:userId order by b.id, s.id",
+                hints = @QueryHint(name = QueryHints.HINT_COMMENT, value = Booking.FIND_SEATS_BY_USER)),
+        @NamedQuery(name = Booking.FIND_BY_USER_AFTER,
+                query = "select b from BOOKING b where b.user.id=:userId and b.id>:after order by b.id",
+                hints = @QueryHint(name = QueryHints.HINT_COMMENT, value = Booking.FIND_BY_USER_AFTER))
+})
 public class Booking {
 
+    public static final String FIND_SEATS_BY_USER = "Booking.findSeatsByUser";
+    public static final String FIND_BY_USER_AFTER = "Booking.findByUserAfter";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "ID", nullable = false)
@@ -7,7 +7,10 @@ import javax.persistence.*;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
+import org.hibernate.jpa.QueryHints;
 
 /**
  * A Concert describes a concert in terms of
@@ -20,7 +23,22 @@ import org.hibernate.annotations.Fetch;
  */
 @Entity(name = "Concert")
 @Table(name = "CONCERTS")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NamedQueries({
+        @NamedQuery(name = Concert.FIND_ALL,
+                query = "select c from Concert c",
+                hints = {@QueryHint(name = QueryHints.HINT_CACHEABLE, value = "true"),
+                        @QueryHint(name = QueryHints.HINT_COMMENT, value = Concert.FIND_ALL)}),
+        @NamedQuery(name = Concert.FIND_DATES,
+                query = "select distinct d from Concert c join c.dates d",
+                hints = @QueryHint(name = QueryHints.HINT_COMMENT, value = Concert.FIND_DATES))
+})
 public class Concert implements Comparable<Concert> {
+
+    public static final String FIND_ALL = "Concert.findAll";
+    public static final String FIND_DATES = "Concert.findDates";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "ID", nullable = false)
@@ -30,6 +48,7 @@ public class Concert implements Comparable<Concert> {
     private String title;
 
     @ElementCollection (fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @CollectionTable(name = "CONCERT_DATES")
     @Column(name = "DATE")
     private Set<LocalDateTime> dates = new HashSet<>();
@@ -38,6 +57,7 @@ public class Concert implements Comparable<Concert> {
     private String imageName;
 
     @ManyToMany(fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JoinTable(
             name = "CONCERT_PERFORMER",
             joinColumns = @JoinColumn(name = "CONCERT_ID", referencedColumnName = "ID"),
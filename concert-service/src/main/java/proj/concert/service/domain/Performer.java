@@ -2,6 +2,9 @@ package proj.concert.service.domain;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.jpa.QueryHints;
 import proj.concert.common.types.Genre;
 
 import javax.persistence.*;
@@ -19,8 +22,18 @@ import java.util.List;
  */
 @Entity (name = "Performer")
 @Table(name = "PERFORMERS")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NamedQueries({
+        @NamedQuery(name = Performer.FIND_ALL,
+                query = "select p from Performer p",
+                hints = {@QueryHint(name = QueryHints.HINT_CACHEABLE, value = "true"),
+                        @QueryHint(name = QueryHints.HINT_COMMENT, value = Performer.FIND_ALL)})
+})
 public class Performer implements Comparable<Performer> {
 
+    public static final String FIND_ALL = "Performer.findAll";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "ID", nullable = false)
@@ -4,8 +4,10 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.jpa.QueryHints;
 import proj.concert.common.jackson.LocalDateTimeDeserializer;
 import proj.concert.common.jackson.LocalDateTimeSerializer;
+import proj.concert.service.util.TheatreLayout;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
@@ -18,16 +20,46 @@ import java.time.LocalDateTime;
  * price    the price
  * isBooked the booking status of the seat
  * date		the date of the respective seat
+ * <p>
+ * Every seat lookup is by date, so both indexes lead with it: one for finding seats by label, one for listing
+ * seats by booking status. A seat can only have one row per date, which also stops a seat being booked twice when
+ * only booked seats are stored (see {@link proj.concert.service.common.Config#SPARSE_SEAT_INVENTORY}).
  */
 @Entity(name = "Seat")
-@Table(name = "SEATS")
+@Table(name = "SEATS", indexes = {
+		@Index(name = "IDX_SEATS_DATE_LABEL", columnList = "DATE, LABEL", unique = true),
+		@Index(name = "IDX_SEATS_DATE_ISBOOKED", columnList = "DATE, ISBOOKED")
+})
+@NamedQueries({
+		@NamedQuery(name = Seat.FIND_BY_LABELS,
+				query = "select s from Seat s where s.label in :labels and s.date=:date",
+				hints = @QueryHint(name = QueryHints.HINT_COMMENT, value = Seat.FIND_BY_LABELS)),
+		@NamedQuery(name = Seat.FIND_BY_DATE,
+				query = "select s from Seat s where s.date=:date",
+				hints = @QueryHint(name = QueryHints.HINT_COMMENT, value = Seat.FIND_BY_DATE)),
+		@NamedQuery(name = Seat.FIND_BY_DATE_AND_STATUS,
+				query = "select s from Seat s where s.date=:date and s.isBooked=:status",
+				hints = @QueryHint(name = QueryHints.HINT_COMMENT, value = Seat.FIND_BY_DATE_AND_STATUS)),
+		@NamedQuery(name = Seat.FIND_BOOKED_LABELS,
+				query = "select s.date, s.label from Seat s where s.isBooked=true",
+				hints = @QueryHint(name = QueryHints.HINT_COMMENT, value = Seat.FIND_BOOKED_LABELS))
+})
 public class Seat{
 
+	public static final String FIND_BY_LABELS = "Seat.findByLabels";
+	public static final String FIND_BY_DATE = "Seat.findByDate";
+	public static final String FIND_BY_DATE_AND_STATUS = "Seat.findByDateAndStatus";
+	public static final String FIND_BOOKED_LABELS = "Seat.findBookedLabels";
+
 	@Version
 	private long version;
 
+	// Ids are handed out a theatre's worth at a time, so persisting the seats for a date costs one sequence call
+	// and the inserts can be batched.
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEAT_ID")
+	@SequenceGenerator(name = "SEAT_ID", sequenceName = "SEATS_SEQ",
+			allocationSize = TheatreLayout.NUM_SEATS_IN_THEATRE)
 	@Column(name = "ID", nullable = false)
 	private Long id;
 
@@ -68,6 +100,21 @@ public class Seat{
 
 	public void setBookingStatus(boolean isBooked){ this.isBooked = isBooked;}
 
+	/**
+	 * Swaps the label and price read from the database for the equal instances shared by {@link TheatreLayout}, so
+	 * that loaded seats do not each keep their own copies.
+	 */
+	@PostLoad
+	private void shareLayoutValues() {
+		int index = TheatreLayout.indexOf(label);
+		if (index >= 0) {
+			label = TheatreLayout.labelOf(index);
+			if (TheatreLayout.priceOf(index).equals(price)) {
+				price = TheatreLayout.priceOf(index);
+			}
+		}
+	}
+
 	@Override
 	public String toString() {
 		return label;
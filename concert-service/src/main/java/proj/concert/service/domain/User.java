@@ -2,6 +2,7 @@ package proj.concert.service.domain;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.jpa.QueryHints;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -12,11 +13,27 @@ import java.util.List;
  * password  the user's password
  * token     the user's authentication token
  * bookings  the bookings associated with the user
+ * <p>
+ * Users are looked up by token on every authenticated request, and by username and password on login.
  */
 @Entity(name = "User")
-@Table(name = "USERS")
+@Table(name = "USERS", indexes = {
+        @Index(name = "IDX_USERS_TOKEN", columnList = "TOKEN"),
+        @Index(name = "IDX_USERS_USERNAME_PASSWORD", columnList = "USERNAME, PASSWORD")
+})
+@NamedQueries({
+        @NamedQuery(name = User.FIND_BY_CREDENTIALS,
+                query = "select u from User u where u.username=:username and u.password=:password",
+                hints = @QueryHint(name = QueryHints.HINT_COMMENT, value = User.FIND_BY_CREDENTIALS)),
+        @NamedQuery(name = User.FIND_BY_TOKEN,
+                query = "select u from User u where u.token=:token",
+                hints = @QueryHint(name = QueryHints.HINT_COMMENT, value = User.FIND_BY_TOKEN))
+})
 public class User {
 
+    public static final String FIND_BY_CREDENTIALS = "User.findByCredentials";
+    public static final String FIND_BY_TOKEN = "User.findByToken";
+
     @Version
     private long version;
 
@@ -61,6 +78,10 @@ public class User {
         this.id = id;
     }
 
+    public String getToken() {
+        return token;
+    }
+
     public void setToken(String token) {
         this.token = token;
     }
@@ -0,0 +1,89 @@
+package proj.concert.service.inventory;
+
+import proj.concert.service.util.TheatreLayout;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Holds the booking status of every seat in the theatre for a single concert date as a bitmap. Bit i is set when
+ * the seat at {@link TheatreLayout} index i is booked, so the whole theatre fits in two longs.
+ * <p>
+ * Words are updated with compare-and-set, so readers never block and never see a seat go from booked back to free.
+ * The booked seat counter is only bumped by the thread whose compare-and-set flipped the bit, so it always agrees with
+ * the bitmap.
+ */
+public class DateInventory {
+
+    private static final int WORD_BITS = Long.SIZE;
+
+    private final LocalDateTime date;
+    private final AtomicLongArray words;
+    private final AtomicInteger bookedCount = new AtomicInteger();
+
+    public DateInventory(LocalDateTime date) {
+        this.date = date;
+        this.words = new AtomicLongArray((TheatreLayout.NUM_SEATS_IN_THEATRE + WORD_BITS - 1) / WORD_BITS);
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public boolean isBooked(int index) {
+        return (words.get(index / WORD_BITS) & bit(index)) != 0;
+    }
+
+    /**
+     * Marks the seat at the given index as booked.
+     *
+     * @return true if the seat was free before this call
+     */
+    public boolean markBooked(int index) {
+        int word = index / WORD_BITS;
+        long mask = bit(index);
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(word, current, current | mask));
+
+        bookedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns the booking status of one row as a bitmap, where bit i is set when seat i + 1 in the row is booked.
+     * Rows may straddle two words of the underlying bitmap, in which case both halves are stitched together.
+     */
+    public long getRowMask(int row) {
+        int start = row * TheatreLayout.NUM_SEATS_PER_ROW;
+        int word = start / WORD_BITS;
+        int offset = start % WORD_BITS;
+
+        long mask = words.get(word) >>> offset;
+        if (offset + TheatreLayout.NUM_SEATS_PER_ROW > WORD_BITS) {
+            mask |= words.get(word + 1) << (WORD_BITS - offset);
+        }
+        return mask & ((1L << TheatreLayout.NUM_SEATS_PER_ROW) - 1);
+    }
+
+    public int getBookedCount() {
+        return bookedCount.get();
+    }
+
+    public int getAvailableCount() {
+        return getTotalCount() - getBookedCount();
+    }
+
+    public int getTotalCount() {
+        return TheatreLayout.NUM_SEATS_IN_THEATRE;
+    }
+
+    private static long bit(int index) {
+        return 1L << (index % WORD_BITS);
+    }
+}
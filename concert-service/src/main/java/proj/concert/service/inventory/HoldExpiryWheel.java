@@ -0,0 +1,81 @@
+package proj.concert.service.inventory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel that releases {@link SeatHold}s once their deadline passes. Holds are dropped into the bucket
+ * for the tick on which they expire, and a single daemon thread visits one bucket per tick. Scheduling and
+ * expiring a hold are both constant time, however many holds are outstanding.
+ * <p>
+ * Holds whose deadline is more than one revolution away are put back into their bucket until a later pass. The
+ * wheel only reclaims memory and seats promptly; {@link SeatHold#isActive(long)} never depends on it having run.
+ */
+class HoldExpiryWheel {
+
+    private final long tickMillis;
+    private final Queue<SeatHold>[] buckets;
+    private final long startMillis = System.currentTimeMillis();
+    private final Consumer<SeatHold> onExpiry;
+    private final ScheduledExecutorService ticker;
+    private long lastTick = 0;
+
+    @SuppressWarnings("unchecked")
+    HoldExpiryWheel(long tickMillis, int numBuckets, Consumer<SeatHold> onExpiry) {
+        this.tickMillis = tickMillis;
+        this.onExpiry = onExpiry;
+        this.buckets = new Queue[numBuckets];
+        for (int i = 0; i < numBuckets; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<SeatHold>();
+        }
+
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "seat-hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void schedule(SeatHold hold) {
+        buckets[bucketFor(tickOf(hold.getExpiresAtMillis()))].add(hold);
+    }
+
+    /**
+     * Visits every bucket whose tick has passed since the last call, expiring the holds that are now due.
+     */
+    private void advance() {
+        long now = System.currentTimeMillis();
+        long currentTick = tickOf(now);
+
+        // Never lap the wheel more than once; one pass over every bucket already sees every hold.
+        long firstTick = Math.max(lastTick + 1, currentTick - buckets.length + 1);
+        for (long tick = firstTick; tick <= currentTick; tick++) {
+            Queue<SeatHold> bucket = buckets[bucketFor(tick)];
+            for (int remaining = bucket.size(); remaining > 0; remaining--) {
+                SeatHold hold = bucket.poll();
+                if (hold == null) {
+                    break;
+                }
+                if (hold.getExpiresAtMillis() <= now) {
+                    onExpiry.accept(hold);
+                } else {
+                    bucket.add(hold);
+                }
+            }
+        }
+        lastTick = currentTick;
+    }
+
+    private long tickOf(long millis) {
+        return (millis - startMillis) / tickMillis;
+    }
+
+    private int bucketFor(long tick) {
+        return (int) (tick % buckets.length);
+    }
+}
@@ -0,0 +1,76 @@
+package proj.concert.service.inventory;
+
+import proj.concert.service.util.TheatreLayout;
+import proj.concert.service.util.TheatreLayout.PriceBand;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.time.LocalDateTime;
+
+/**
+ * Utility class that picks the best block of adjacent free seats for a concert date, so that clients can ask for
+ * "N seats together" instead of guessing labels.
+ * <p>
+ * Each row is scanned as a bitmap of free seats. ANDing the bitmap with itself shifted right by 1 .. N - 1 leaves
+ * bit i set exactly when seats i .. i + N - 1 are all free, so every candidate block in a row is found with N - 1
+ * word operations. Rows are tried front to back, and within a row the block closest to the centre wins.
+ */
+public class SeatAllocator {
+
+    private static final long FULL_ROW = (1L << TheatreLayout.NUM_SEATS_PER_ROW) - 1;
+
+    /**
+     * Finds the best block of adjacent seats that are neither booked nor held by another user. A 400 Bad Request is
+     * thrown when the date is unknown or the number of seats can't fit in a row.
+     *
+     * @param band the price band to allocate from, or null to allocate from any band
+     * @return the {@link TheatreLayout} indices of the block, or null if no block of that size is free
+     */
+    public static int[] findBestBlock(LocalDateTime date, long userId, int numSeats, PriceBand band) {
+        DateInventory inventory = SeatInventory.instance().get(date);
+        if (inventory == null || numSeats < 1 || numSeats > TheatreLayout.NUM_SEATS_PER_ROW) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+
+        int firstRow = band == null ? 0 : TheatreLayout.firstRowOf(band);
+        int lastRow = band == null ? TheatreLayout.NUM_ROWS : firstRow + band.numRows;
+
+        for (int row = firstRow; row < lastRow; row++) {
+            long taken = inventory.getRowMask(row) | SeatHolds.instance().getRowMask(date, row, userId);
+            int start = bestRunStart(~taken & FULL_ROW, numSeats);
+            if (start >= 0) {
+                int[] seats = new int[numSeats];
+                for (int i = 0; i < numSeats; i++) {
+                    seats[i] = row * TheatreLayout.NUM_SEATS_PER_ROW + start + i;
+                }
+                return seats;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the position of the free run of the given length whose middle is closest to the middle of the row, or
+     * -1 if there is no such run.
+     */
+    static int bestRunStart(long free, int length) {
+        long starts = free;
+        for (int i = 1; i < length; i++) {
+            starts &= free >>> i;
+        }
+
+        // Compare doubled distances from the centre to stay in integers
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        while (starts != 0) {
+            int start = Long.numberOfTrailingZeros(starts);
+            int distance = Math.abs(2 * start + length - TheatreLayout.NUM_SEATS_PER_ROW);
+            if (distance < bestDistance) {
+                best = start;
+                bestDistance = distance;
+            }
+            starts &= starts - 1;
+        }
+        return best;
+    }
+}
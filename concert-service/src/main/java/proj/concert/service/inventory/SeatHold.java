@@ -0,0 +1,78 @@
+package proj.concert.service.inventory;
+
+import java.time.LocalDateTime;
+
+/**
+ * A set of seats on one concert date reserved for a single user until a deadline. A hold stops other users from
+ * booking or holding the same seats, and lapses on its own if the seats are not booked in time.
+ */
+public class SeatHold {
+
+    private final long id;
+    private final long userId;
+    private final long concertId;
+    private final LocalDateTime date;
+    private final int[] seats;
+    private final long expiresAtMillis;
+    private final SeatHold[] displaced;
+    private volatile boolean released;
+
+    public SeatHold(long id, long userId, long concertId, LocalDateTime date, int[] seats, long expiresAtMillis) {
+        this.id = id;
+        this.userId = userId;
+        this.concertId = concertId;
+        this.date = date;
+        this.seats = seats;
+        this.expiresAtMillis = expiresAtMillis;
+        this.displaced = new SeatHold[seats.length];
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    /**
+     * Returns the {@link proj.concert.service.util.TheatreLayout} indices of the held seats.
+     */
+    public int[] getSeats() {
+        return seats;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    /**
+     * A hold is active until it is released or its deadline passes, whichever happens first.
+     */
+    public boolean isActive(long nowMillis) {
+        return !released && nowMillis < expiresAtMillis;
+    }
+
+    /**
+     * Returns the hold of the same user that owned the i-th seat before this hold took it over, or null.
+     */
+    SeatHold getDisplaced(int i) {
+        return displaced[i];
+    }
+
+    void setDisplaced(int i, SeatHold hold) {
+        displaced[i] = hold;
+    }
+
+    void markReleased() {
+        released = true;
+    }
+}
@@ -0,0 +1,141 @@
+package proj.concert.service.inventory;
+
+import proj.concert.service.common.Config;
+import proj.concert.service.util.TheatreLayout;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Singleton registry of {@link SeatHold}s. Each concert date has one slot per seat holding a reference to the hold
+ * that currently owns it, and seats are claimed by compare-and-set on those slots, so placing and releasing holds
+ * never takes a lock. Holds lapse through a {@link HoldExpiryWheel}.
+ * <p>
+ * A user may replace their own holds freely; only an active hold belonging to another user blocks a seat. A hold
+ * that takes over a seat from another of the user's holds remembers it, and gives the seat back to it when released
+ * (or rolled back), as long as that hold is still active. A booking claim therefore leaves the user's earlier hold in
+ * place if the booking fails.
+ */
+public class SeatHolds {
+
+    private static SeatHolds instance = null;
+
+    private final Map<LocalDateTime, AtomicReferenceArray<SeatHold>> slotsByDate = new ConcurrentHashMap<>();
+    private final Map<Long, SeatHold> holdsById = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final HoldExpiryWheel expiryWheel =
+            new HoldExpiryWheel(Config.SEAT_HOLD_TICK_MILLIS, Config.SEAT_HOLD_WHEEL_BUCKETS, this::release);
+
+    protected SeatHolds() {
+    }
+
+    public static synchronized SeatHolds instance() {
+        if (instance == null) {
+            instance = new SeatHolds();
+        }
+        return instance;
+    }
+
+    /**
+     * Holds the given seats for a user. Either every seat is held or, if any seat is held by somebody else, none are
+     * and a 403 Forbidden is thrown.
+     *
+     * @param seats          the {@link TheatreLayout} indices of the seats, already checked to be free and distinct
+     * @param durationMillis how long the hold lasts if it is not released
+     */
+    public SeatHold hold(long userId, long concertId, LocalDateTime date, int[] seats, long durationMillis) {
+        long now = System.currentTimeMillis();
+        SeatHold hold = new SeatHold(nextId.incrementAndGet(), userId, concertId, date, seats, now + durationMillis);
+        AtomicReferenceArray<SeatHold> slots = slotsByDate.computeIfAbsent(date,
+                d -> new AtomicReferenceArray<SeatHold>(TheatreLayout.NUM_SEATS_IN_THEATRE));
+
+        for (int i = 0; i < seats.length; i++) {
+            SeatHold current;
+            do {
+                current = slots.get(seats[i]);
+                if (current != null && current.isActive(now) && current.getUserId() != userId) {
+                    // Give back the seats claimed so far
+                    for (int j = 0; j < i; j++) {
+                        slots.compareAndSet(seats[j], hold, restorable(hold.getDisplaced(j), now));
+                    }
+                    throw new WebApplicationException(Response.Status.FORBIDDEN);
+                }
+            } while (!slots.compareAndSet(seats[i], current, hold));
+            hold.setDisplaced(i, current != null && current.isActive(now) ? current : null);
+        }
+
+        holdsById.put(hold.getId(), hold);
+        expiryWheel.schedule(hold);
+        return hold;
+    }
+
+    /**
+     * Returns the seats in one row that are actively held by users other than the given one, in the same bitmap form
+     * as {@link DateInventory#getRowMask(int)}.
+     */
+    public long getRowMask(LocalDateTime date, int row, long userId) {
+        AtomicReferenceArray<SeatHold> slots = slotsByDate.get(date);
+        if (slots == null) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        long mask = 0;
+        int start = row * TheatreLayout.NUM_SEATS_PER_ROW;
+        for (int seat = 0; seat < TheatreLayout.NUM_SEATS_PER_ROW; seat++) {
+            SeatHold hold = slots.get(start + seat);
+            if (hold != null && hold.isActive(now) && hold.getUserId() != userId) {
+                mask |= 1L << seat;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the hold with the given id, or null if it does not exist or is no longer active.
+     */
+    public SeatHold get(long id) {
+        SeatHold hold = holdsById.get(id);
+        return hold != null && hold.isActive(System.currentTimeMillis()) ? hold : null;
+    }
+
+    /**
+     * Releases every seat still owned by the hold. Releasing a hold more than once has no effect.
+     */
+    public void release(SeatHold hold) {
+        hold.markReleased();
+        holdsById.remove(hold.getId());
+
+        AtomicReferenceArray<SeatHold> slots = slotsByDate.get(hold.getDate());
+        if (slots != null) {
+            long now = System.currentTimeMillis();
+            int[] seats = hold.getSeats();
+            for (int i = 0; i < seats.length; i++) {
+                slots.compareAndSet(seats[i], hold, restorable(hold.getDisplaced(i), now));
+            }
+        }
+    }
+
+    /**
+     * Returns the displaced hold if it should own its seat again, or null if it has lapsed in the meantime.
+     */
+    private static SeatHold restorable(SeatHold displaced, long now) {
+        return displaced != null && displaced.isActive(now) ? displaced : null;
+    }
+
+    /**
+     * Drops every hold, e.g. because the database has been reset.
+     */
+    public void clear() {
+        for (SeatHold hold : holdsById.values()) {
+            hold.markReleased();
+        }
+        holdsById.clear();
+        slotsByDate.clear();
+    }
+}
@@ -0,0 +1,147 @@
+package proj.concert.service.inventory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import proj.concert.common.dto.SeatDTO;
+import proj.concert.common.types.BookingStatus;
+import proj.concert.service.domain.Concert;
+import proj.concert.service.domain.Seat;
+import proj.concert.service.mapper.SeatMapper;
+import proj.concert.service.util.TheatreLayout;
+
+import javax.persistence.EntityManager;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton in-memory view of seat availability for every concert date, backed by one {@link DateInventory} bitmap
+ * per date. Every seat of a concert date starts out free unless the SEATS table has it booked, so the inventory is
+ * the same whether all seats or only booked seats are stored. It is loaded from the database once (at start-up and
+ * after a database reset) and is then kept in sync by calling {@link #markBooked(LocalDateTime, List)} after every
+ * booking commits.
+ * <p>
+ * The database remains the source of truth; the inventory lets seat listings and pre-booking checks be answered
+ * without a query.
+ */
+public class SeatInventory {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SeatInventory.class);
+
+    // Created eagerly: instance() is called on every seat lookup and booking, so it must not take a lock
+    private static final SeatInventory instance = new SeatInventory();
+
+    private volatile Map<LocalDateTime, DateInventory> dates = new ConcurrentHashMap<>();
+
+    protected SeatInventory() {
+    }
+
+    public static SeatInventory instance() {
+        return instance;
+    }
+
+    /**
+     * Replaces the contents of the inventory with the concert dates and the booked seats in the database.
+     */
+    public void load(EntityManager em) {
+        Map<LocalDateTime, DateInventory> loaded = new ConcurrentHashMap<>();
+
+        List<LocalDateTime> concertDates = em
+                .createNamedQuery(Concert.FIND_DATES, LocalDateTime.class)
+                .getResultList();
+        for (LocalDateTime date : concertDates) {
+            loaded.put(date, new DateInventory(date));
+        }
+
+        List<Object[]> bookedSeats = em
+                .createNamedQuery(Seat.FIND_BOOKED_LABELS, Object[].class)
+                .getResultList();
+        for (Object[] bookedSeat : bookedSeats) {
+            loaded.get((LocalDateTime) bookedSeat[0]).markBooked(TheatreLayout.indexOf((String) bookedSeat[1]));
+        }
+
+        dates = loaded;
+        LOGGER.debug("load(): Loaded " + loaded.size() + " concert dates with " + bookedSeats.size() + " booked seats");
+    }
+
+    /**
+     * Returns the inventory for the given date, or null if there is no concert on that date.
+     */
+    public DateInventory get(LocalDateTime date) {
+        return date == null ? null : dates.get(date);
+    }
+
+    /**
+     * Checks that every requested seat exists and is still free on the given date. A 400 Bad Request is thrown when
+     * the date or a label is invalid, and a 403 Forbidden is thrown when a seat has already been booked.
+     *
+     * @return the theatre indices of the requested seats
+     */
+    public int[] checkBookable(LocalDateTime date, List<String> labels) {
+        DateInventory inventory = get(date);
+        if (inventory == null || labels.isEmpty()) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+
+        int[] indices = new int[labels.size()];
+        BitSet requested = new BitSet(TheatreLayout.NUM_SEATS_IN_THEATRE);
+        for (int i = 0; i < indices.length; i++) {
+            int index = TheatreLayout.indexOf(labels.get(i));
+            if (index < 0) {
+                throw new WebApplicationException(Response.Status.BAD_REQUEST);
+            }
+            if (inventory.isBooked(index) || requested.get(index)) {
+                throw new WebApplicationException(Response.Status.FORBIDDEN);
+            }
+            requested.set(index);
+            indices[i] = index;
+        }
+        return indices;
+    }
+
+    /**
+     * Records the given seats as booked. Must only be called once the booking has been committed.
+     *
+     * @return the inventory for the date, whose counters now include the booked seats
+     */
+    public DateInventory markBooked(LocalDateTime date, List<Seat> seats) {
+        DateInventory inventory = dates.computeIfAbsent(date, DateInventory::new);
+        for (Seat seat : seats) {
+            inventory.markBooked(TheatreLayout.indexOf(seat.getLabel()));
+        }
+        return inventory;
+    }
+
+    /**
+     * Builds the seats with the given status for a date. Returns an empty list when there is no concert on that date.
+     */
+    public ArrayList<SeatDTO> getSeats(LocalDateTime date, BookingStatus status) {
+        return getSeats(date, status, -1, TheatreLayout.NUM_SEATS_IN_THEATRE);
+    }
+
+    /**
+     * Builds up to limit seats with the given status for a date, starting after the seat at the given
+     * {@link TheatreLayout} index and continuing in layout order.
+     */
+    public ArrayList<SeatDTO> getSeats(LocalDateTime date, BookingStatus status, int after, int limit) {
+        ArrayList<SeatDTO> seats = new ArrayList<SeatDTO>();
+        DateInventory inventory = get(date);
+        if (inventory == null) {
+            return seats;
+        }
+
+        for (int index = after + 1; index < TheatreLayout.NUM_SEATS_IN_THEATRE && seats.size() < limit; index++) {
+            boolean booked = inventory.isBooked(index);
+            if (status == BookingStatus.Any || booked == (status == BookingStatus.Booked)) {
+                seats.add(SeatMapper.toDto(index));
+            }
+        }
+        return seats;
+    }
+}
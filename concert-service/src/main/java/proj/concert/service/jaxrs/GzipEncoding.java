@@ -0,0 +1,191 @@
+package proj.concert.service.jaxrs;
+
+import proj.concert.service.common.Config;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip-compresses response bodies for clients whose Accept-Encoding allows it. Bodies shorter than
+ * {@link Config#GZIP_MIN_BYTES} are sent as they are.
+ * <p>
+ * The response filter negotiates the encoding. {@link PrecompressedEntity} bodies are swapped for their compressed
+ * or uncompressed form right there. Other bodies are marked for compression, and the writer interceptor buffers
+ * the start of each one until it is known to reach the threshold. Only then is the Content-Encoding header set and
+ * compression started. Server-sent event streams are never compressed.
+ * <p>
+ * A compressed body is a different representation from the uncompressed one, so its ETag gets a "-gzip" suffix,
+ * see {@link #gzipTag(EntityTag)}.
+ */
+@Provider
+public class GzipEncoding implements ContainerResponseFilter, WriterInterceptor {
+
+    private static final String GZIP = "gzip";
+
+    private static final String GZIP_TAG_SUFFIX = "-gzip";
+
+    private static final String COMPRESS_PROPERTY = GzipEncoding.class.getName() + ".compress";
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object entity = response.getEntity();
+        if (entity == null || response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)
+                || MediaType.SERVER_SENT_EVENTS_TYPE.isCompatible(response.getMediaType())) {
+            return;
+        }
+
+        response.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        boolean acceptsGzip = acceptsGzip(request.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+
+        if (entity instanceof PrecompressedEntity) {
+            PrecompressedEntity precompressed = (PrecompressedEntity) entity;
+            if (acceptsGzip && precompressed.getGzip() != null) {
+                response.setEntity(precompressed.getGzip(), response.getEntityAnnotations(), response.getMediaType());
+                response.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
+                if (response.getEntityTag() != null) {
+                    response.getHeaders().putSingle(HttpHeaders.ETAG, gzipTag(response.getEntityTag()));
+                }
+            } else {
+                response.setEntity(precompressed.getIdentity(), response.getEntityAnnotations(), response.getMediaType());
+            }
+        } else if (acceptsGzip && !(entity instanceof byte[] && ((byte[]) entity).length < Config.GZIP_MIN_BYTES)) {
+            request.setProperty(COMPRESS_PROPERTY, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        if (context.getProperty(COMPRESS_PROPERTY) == null) {
+            context.proceed();
+            return;
+        }
+
+        OutputStream original = context.getOutputStream();
+        ThresholdGzipOutputStream compressing = new ThresholdGzipOutputStream(original, () -> {
+            context.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
+            context.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+            Object tag = context.getHeaders().getFirst(HttpHeaders.ETAG);
+            if (tag != null) {
+                EntityTag entityTag = tag instanceof EntityTag ? (EntityTag) tag : EntityTag.valueOf(tag.toString());
+                context.getHeaders().putSingle(HttpHeaders.ETAG, gzipTag(entityTag));
+            }
+        });
+        context.setOutputStream(compressing);
+        try {
+            context.proceed();
+        } finally {
+            compressing.finish();
+            context.setOutputStream(original);
+        }
+    }
+
+    /**
+     * Returns the entity tag of the gzip-compressed form of a body whose uncompressed form has the given tag.
+     */
+    public static EntityTag gzipTag(EntityTag tag) {
+        return new EntityTag(tag.getValue() + GZIP_TAG_SUFFIX, tag.isWeak());
+    }
+
+    /**
+     * Returns whether an Accept-Encoding header allows gzip, i.e. lists gzip or * without a zero quality.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase(GZIP) || name.equals("*")) {
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim().replace(" ", "");
+                    if (parameter.matches("q=0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Holds back the first {@link Config#GZIP_MIN_BYTES} bytes written to it. If the body ends before then it is
+     * written uncompressed; otherwise the callback runs, so that headers can be changed before anything is sent, and
+     * the body is compressed from the start.
+     */
+    private static class ThresholdGzipOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final Runnable onCompress;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(Config.GZIP_MIN_BYTES);
+        private GZIPOutputStream gzip;
+        private boolean finished;
+
+        ThresholdGzipOutputStream(OutputStream out, Runnable onCompress) {
+            this.out = out;
+            this.onCompress = onCompress;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (gzip != null) {
+                gzip.write(b, off, len);
+                return;
+            }
+
+            buffer.write(b, off, len);
+            if (buffer.size() >= Config.GZIP_MIN_BYTES) {
+                onCompress.run();
+                gzip = new GZIPOutputStream(out);
+                buffer.writeTo(gzip);
+                buffer = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // Nothing is sent while the body might still turn out to be too short to compress
+            if (gzip != null) {
+                gzip.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        /**
+         * Writes out whatever is still held back, without closing the underlying stream. Calling it again has no
+         * effect.
+         */
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (gzip != null) {
+                gzip.finish();
+            } else {
+                buffer.writeTo(out);
+            }
+        }
+    }
+}
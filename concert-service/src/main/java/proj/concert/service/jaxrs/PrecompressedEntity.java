@@ -0,0 +1,27 @@
+package proj.concert.service.jaxrs;
+
+/**
+ * A response body that is available both as is and already gzip-compressed. {@link GzipEncoding} replaces it with
+ * whichever form the client accepts before the response is written, so the same bytes are never compressed twice.
+ */
+public class PrecompressedEntity {
+
+    private final byte[] identity;
+    private final byte[] gzip;
+
+    /**
+     * @param gzip the compressed body, or null if the body is too small to be worth compressing
+     */
+    public PrecompressedEntity(byte[] identity, byte[] gzip) {
+        this.identity = identity;
+        this.gzip = gzip;
+    }
+
+    public byte[] getIdentity() {
+        return identity;
+    }
+
+    public byte[] getGzip() {
+        return gzip;
+    }
+}
@@ -0,0 +1,64 @@
+package proj.concert.service.jaxrs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.jaxrs.smile.SmileMediaTypes;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Variant;
+import java.util.List;
+
+/**
+ * The formats the service reads and writes its DTOs in. JSON is the default. Jackson's binary Smile format carries
+ * the same data in fewer bytes and is cheaper to write and parse, and is sent to clients whose Accept header asks
+ * for it, such as the webapp.
+ * <p>
+ * Most responses are negotiated by JAX-RS from the @Produces of the resource method. Bodies that the service
+ * serialises itself, such as cached and streamed responses, use {@link #select(Request)} and {@link #mapperFor}.
+ */
+public class WireFormats {
+
+    public static final String APPLICATION_SMILE = SmileMediaTypes.APPLICATION_JACKSON_SMILE;
+
+    public static final MediaType APPLICATION_SMILE_TYPE = SmileMediaTypes.APPLICATION_JACKSON_SMILE_TYPE;
+
+    /**
+     * The representations of a response, in order of preference.
+     */
+    public static final List<Variant> VARIANTS =
+            Variant.mediaTypes(MediaType.APPLICATION_JSON_TYPE, APPLICATION_SMILE_TYPE).build();
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+
+    private WireFormats() {
+    }
+
+    /**
+     * Returns the format that best matches the request's Accept header, or JSON if it accepts neither.
+     */
+    public static MediaType select(Request request) {
+        Variant variant = request.selectVariant(VARIANTS);
+        return variant != null && isSmile(variant.getMediaType())
+                ? APPLICATION_SMILE_TYPE
+                : MediaType.APPLICATION_JSON_TYPE;
+    }
+
+    /**
+     * Returns whether the given type is Smile, ignoring any parameters. Wildcards do not count.
+     */
+    public static boolean isSmile(MediaType type) {
+        return type != null
+                && APPLICATION_SMILE_TYPE.getType().equalsIgnoreCase(type.getType())
+                && APPLICATION_SMILE_TYPE.getSubtype().equalsIgnoreCase(type.getSubtype());
+    }
+
+    /**
+     * Returns a shared mapper that writes the given format.
+     */
+    public static ObjectMapper mapperFor(MediaType type) {
+        return isSmile(type) ? SMILE_MAPPER : JSON_MAPPER;
+    }
+}
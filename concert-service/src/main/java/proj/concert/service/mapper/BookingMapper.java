@@ -5,7 +5,10 @@ import proj.concert.common.dto.SeatDTO;
 import proj.concert.service.domain.Booking;
 import proj.concert.service.domain.Seat;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 
 public class BookingMapper {
     public static BookingDTO toDto(Booking booking) {
@@ -17,8 +20,23 @@ public class BookingMapper {
         }
 
         for (Seat seat: booking.getSeats()){
-            seats.add(new SeatDTO(seat.getLabel(), seat.getPrice()));
+            seats.add(SeatMapper.toDto(seat));
         }
         return new BookingDTO(booking.getConcertId(), booking.getDate(), seats);
     }
+
+    /**
+     * Builds the DTO for one booking from its rows of {@link Booking#FIND_SEATS_BY_USER}, one row per seat.
+     */
+    public static BookingDTO toDto(List<Object[]> rows) {
+        ArrayList<SeatDTO> seats = new ArrayList<SeatDTO>();
+        for (Object[] row : rows) {
+            if (row[3] != null) {
+                seats.add(new SeatDTO((String) row[3], (BigDecimal) row[4]));
+            }
+        }
+
+        Object[] first = rows.get(0);
+        return new BookingDTO((Long) first[1], (LocalDateTime) first[2], seats);
+    }
 }
@@ -0,0 +1,24 @@
+package proj.concert.service.mapper;
+
+import proj.concert.common.dto.SeatHoldDTO;
+import proj.concert.service.inventory.SeatHold;
+import proj.concert.service.util.TheatreLayout;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SeatHoldMapper {
+    public static SeatHoldDTO toDto(SeatHold hold) {
+
+        List<String> seatLabels = new ArrayList<String>();
+        for (int seat : hold.getSeats()) {
+            seatLabels.add(TheatreLayout.labelOf(seat));
+        }
+
+        LocalDateTime expiry = LocalDateTime.ofInstant(Instant.ofEpochMilli(hold.getExpiresAtMillis()), ZoneId.systemDefault());
+        return new SeatHoldDTO(hold.getId(), hold.getConcertId(), hold.getDate(), seatLabels, expiry);
+    }
+}
@@ -0,0 +1,18 @@
+package proj.concert.service.mapper;
+
+import proj.concert.common.dto.SeatDTO;
+import proj.concert.service.domain.Seat;
+import proj.concert.service.util.TheatreLayout;
+
+public class SeatMapper {
+    public static SeatDTO toDto(Seat seat) {
+        return new SeatDTO(seat.getLabel(), seat.getPrice());
+    }
+
+    /**
+     * Builds the DTO for the seat at the given {@link TheatreLayout} index from the layout's shared labels and prices.
+     */
+    public static SeatDTO toDto(int index) {
+        return new SeatDTO(TheatreLayout.labelOf(index), TheatreLayout.priceOf(index));
+    }
+}
@@ -1,8 +1,11 @@
 package proj.concert.service.services;
 
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
+
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
 
+import proj.concert.service.jaxrs.GzipEncoding;
 import proj.concert.service.util.ConcertUtils;
 
 import java.util.HashSet;
@@ -22,6 +25,9 @@ public class ConcertApplication extends Application {
         classes.add(TestResource.class);
         classes.add(ConcertResource.class);
         singleton.add(PersistenceManager.instance());
+        // JSON is handled by the Jackson provider RESTEasy discovers on its own; Smile has to be registered
+        singleton.add(new JacksonSmileProvider());
+        singleton.add(new GzipEncoding());
         ConcertUtils.initConcerts();
     }
 
@@ -2,24 +2,43 @@ package proj.concert.service.services;
 
 import proj.concert.common.dto.*;
 import proj.concert.common.types.BookingStatus;
+import proj.concert.service.booking.BookingEngine;
+import proj.concert.service.cache.CachedResponse;
+import proj.concert.service.cache.CatalogCache;
+import proj.concert.service.cache.CatalogSnapshot;
+import proj.concert.service.cache.TokenCache;
 import proj.concert.service.domain.*;
+import proj.concert.service.common.Config;
+import proj.concert.service.inventory.DateInventory;
+import proj.concert.service.inventory.SeatAllocator;
+import proj.concert.service.inventory.SeatHold;
+import proj.concert.service.inventory.SeatHolds;
+import proj.concert.service.inventory.SeatInventory;
 import proj.concert.service.jaxrs.LocalDateTimeParam;
+import proj.concert.service.jaxrs.WireFormats;
 import proj.concert.service.mapper.*;
+import proj.concert.service.subscription.SeatEventBroadcaster;
+import proj.concert.service.subscription.SubscriptionRegistry;
 import proj.concert.service.util.ConcertResourceUtils;
+import proj.concert.service.util.TheatreLayout;
 
 import javax.persistence.EntityManager;
 import javax.persistence.LockModeType;
-import javax.persistence.TypedQuery;
 import javax.ws.rs.*;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.*;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
 import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static org.hibernate.tool.schema.SchemaToolingLogging.LOGGER;
 import static proj.concert.service.util.ConcertResourceUtils.*;
+import static proj.concert.service.util.JsonStreams.streamGroupedQuery;
+import static proj.concert.service.util.JsonStreams.streamQuery;
 
 /**
  * This is a class that implements endpoints for a concert application
@@ -45,9 +64,24 @@ import static proj.concert.service.util.ConcertResourceUtils.*;
  * - POST   <base-uri>/bookings
  * Makes a booking request
  * <p>
+ * - POST   <base-uri>/bookings/batch
+ * Makes many booking requests at once
+ * <p>
+ * - POST   <base-uri>/holds
+ * Holds seats for a few minutes while a booking is completed
+ * <p>
+ * - POST   <base-uri>/holds/best-available
+ * Holds the best block of adjacent free seats
+ * <p>
+ * - DELETE <base-uri>/holds/{id}
+ * Releases a hold
+ * <p>
  * - GET    <base-uri>/seats/{localdatetime}
  * Retrieve seats for a given date
  * <p>
+ * - GET    <base-uri>/seats/{localdatetime}/events
+ * Streams seat availability updates for a given date as server-sent events
+ * <p>
  * - GET    <base-uri>/bookings/{id}
  * Retrieves booking with given id
  * <p>
@@ -59,7 +93,6 @@ import static proj.concert.service.util.ConcertResourceUtils.*;
 public class ConcertResource {
 
     private EntityManager em = PersistenceManager.instance().createEntityManager();
-    private static final Map<AsyncResponse, ConcertInfoSubscriptionDTO> subs = new HashMap<>();
 
     /**
      * Attempts to retrieve a concert with supplied concertId. If a valid concert is found a concert object
@@ -67,86 +100,100 @@ public class ConcertResource {
      *
      * @param id   the unique id for a specific concert
      * @param auth the user auth token
+     * @param request the request, used to evaluate If-None-Match
      * @return a JSON object representation of a given concert
      */
     @GET
     @Path("/concerts/{id}")
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response retrieveConcert(@PathParam("id") long id, @CookieParam("auth") Cookie auth) {
+    @Produces({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    public Response retrieveConcert(@PathParam("id") long id, @CookieParam("auth") Cookie auth, @Context Request request) {
         LOGGER.info("Retrieving concert with id: " + id);
 
-        ConcertDTO dtoConcert;
-        Concert concert;
+        CachedResponse cached;
 
         try {
-            em.getTransaction().begin();
-            concert = findConcert(em, id, "GET");
-            dtoConcert = ConcertMapper.toDto(concert);
-            em.getTransaction().commit();
+            CatalogSnapshot catalog = CatalogCache.instance().get(em);
+            ConcertDTO dtoConcert = catalog.getConcert(id);
+            if (dtoConcert == null) {
+                entityExceptionDecisionManager("GET");
+            }
+            cached = catalog.getResponse("concerts/" + id, dtoConcert);
         } finally {
-            em.close();
+            closeEntityManager(em);
         }
 
-        return Response.ok(dtoConcert).build();
+        return cachedResponse(request, cached);
     }
 
     /**
-     * Attempts to retrieve all concerts
+     * Attempts to retrieve all concerts. If a limit is given only one page of concerts, in id order, is returned, and
+     * a Link header points at the next page. If the limit is out of range a 400 bad request is returned.
      *
+     * @param limit the maximum number of concerts to return, or null for all of them
+     * @param after the id of the last concert on the previous page
      * @param auth the user auth token
+     * @param request the request, used to evaluate If-None-Match
+     * @param uriInfo the request URI, used to link to the next page
      * @return a JSON object representation of all concerts
      */
     @GET
     @Path("/concerts")
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response retrieveAllConcerts(@CookieParam("auth") Cookie auth) {
+    @Produces({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    public Response retrieveAllConcerts(@QueryParam("limit") Integer limit, @QueryParam("after") @DefaultValue("0") long after,
+                                        @CookieParam("auth") Cookie auth, @Context Request request, @Context UriInfo uriInfo) {
         LOGGER.info("Retrieving all concerts");
 
-        ArrayList<ConcertDTO> dtoConcerts = new ArrayList<ConcertDTO>();
-        List<Concert> concerts;
+        CachedResponse cached;
+        URI next = null;
 
         try {
-            em.getTransaction().begin();
-            concerts = findAllConcerts(em);
-            for (Concert concert : concerts) {
-                dtoConcerts.add(ConcertMapper.toDto(concert));
+            CatalogSnapshot catalog = CatalogCache.instance().get(em);
+            if (limit == null) {
+                cached = catalog.getResponse("concerts", catalog.getConcerts());
+            } else {
+                checkPageLimit(limit);
+                List<ConcertDTO> page = catalog.getConcertsAfter(after, limit);
+                if (page.isEmpty()) {
+                    cached = catalog.getResponse("concerts?limit=0", page);
+                } else {
+                    long first = page.get(0).getId();
+                    long last = page.get(page.size() - 1).getId();
+                    cached = catalog.getResponse("concerts?from=" + first + "&limit=" + limit, page);
+                    if (catalog.hasConcertsAfter(last)) {
+                        next = nextPageUri(uriInfo, last);
+                    }
+                }
             }
-            em.getTransaction().commit();
         } finally {
-            em.close();
+            closeEntityManager(em);
         }
 
-        return Response.ok(dtoConcerts).build();
+        return cachedResponse(request, cached, next);
     }
 
     /**
      * Attempts to retrieve all concert summaries
      *
      * @param auth the user auth token
+     * @param request the request, used to evaluate If-None-Match
      * @return a JSON object representation of all concert summaries
      */
     @GET
     @Path("/concerts/summaries")
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response retrieveAllConcertSummaries(@CookieParam("auth") Cookie auth) {
+    @Produces({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    public Response retrieveAllConcertSummaries(@CookieParam("auth") Cookie auth, @Context Request request) {
         LOGGER.info("Retrieving all concert summaries");
 
-        ArrayList<ConcertSummaryDTO> dtoConcertSummaries = new ArrayList<ConcertSummaryDTO>();
-        List<Concert> concerts;
+        CachedResponse cached;
 
         try {
-            em.getTransaction().begin();
-            concerts = findAllConcerts(em);
-            for (Concert concert : concerts) {
-                ConcertSummaryDTO toAdd = new ConcertSummaryDTO(concert.getId(), concert.getTitle(), concert.getImageName());
-                dtoConcertSummaries.add(toAdd);
-            }
-            em.getTransaction().commit();
+            CatalogSnapshot catalog = CatalogCache.instance().get(em);
+            cached = catalog.getResponse("concerts/summaries", catalog.getConcertSummaries());
         } finally {
-            em.close();
+            closeEntityManager(em);
         }
 
-        return Response.ok(dtoConcertSummaries).build();
+        return cachedResponse(request, cached);
     }
 
     /**
@@ -155,50 +202,75 @@ public class ConcertResource {
      *
      * @param id   the unique id of a specific concert
      * @param auth the user auth token
+     * @param request the request, used to evaluate If-None-Match
      * @return a JSON object representation of a given performer
      */
     @GET
     @Path("/performers/{id}")
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response retrievePerformer(@PathParam("id") long id, @CookieParam("auth") Cookie auth) {
+    @Produces({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    public Response retrievePerformer(@PathParam("id") long id, @CookieParam("auth") Cookie auth, @Context Request request) {
         LOGGER.info("Retrieving performer with id: " + id);
 
-        PerformerDTO dtoPerformer;
+        CachedResponse cached;
 
         try {
-            em.getTransaction().begin();
-            dtoPerformer = getDtoPerformer(em, id, "GET");
-            em.getTransaction().commit();
+            CatalogSnapshot catalog = CatalogCache.instance().get(em);
+            PerformerDTO dtoPerformer = catalog.getPerformer(id);
+            if (dtoPerformer == null) {
+                entityExceptionDecisionManager("GET");
+            }
+            cached = catalog.getResponse("performers/" + id, dtoPerformer);
         } finally {
-            em.close();
+            closeEntityManager(em);
         }
 
-        return Response.ok(dtoPerformer).build();
+        return cachedResponse(request, cached);
     }
 
     /**
-     * Attempts to retrieve all performers
+     * Attempts to retrieve all performers. If a limit is given only one page of performers, in id order, is returned,
+     * and a Link header points at the next page. If the limit is out of range a 400 bad request is returned.
      *
+     * @param limit the maximum number of performers to return, or null for all of them
+     * @param after the id of the last performer on the previous page
      * @param auth the user auth token
+     * @param request the request, used to evaluate If-None-Match
+     * @param uriInfo the request URI, used to link to the next page
      * @return a JSON representation of all performer objects
      */
     @GET
     @Path("/performers")
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response retrieveAllPerformers(@CookieParam("auth") Cookie auth) {
+    @Produces({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    public Response retrieveAllPerformers(@QueryParam("limit") Integer limit, @QueryParam("after") @DefaultValue("0") long after,
+                                          @CookieParam("auth") Cookie auth, @Context Request request, @Context UriInfo uriInfo) {
         LOGGER.info("Retrieving all performers");
 
-        ArrayList<PerformerDTO> dtoPerformers = new ArrayList<PerformerDTO>();
+        CachedResponse cached;
+        URI next = null;
 
         try {
-            em.getTransaction().begin();
-            dtoPerformers = getAllDtoPerformers(em);
-            em.getTransaction().commit();
+            CatalogSnapshot catalog = CatalogCache.instance().get(em);
+            if (limit == null) {
+                cached = catalog.getResponse("performers", catalog.getPerformers());
+            } else {
+                checkPageLimit(limit);
+                List<PerformerDTO> page = catalog.getPerformersAfter(after, limit);
+                if (page.isEmpty()) {
+                    cached = catalog.getResponse("performers?limit=0", page);
+                } else {
+                    long first = page.get(0).getId();
+                    long last = page.get(page.size() - 1).getId();
+                    cached = catalog.getResponse("performers?from=" + first + "&limit=" + limit, page);
+                    if (catalog.hasPerformersAfter(last)) {
+                        next = nextPageUri(uriInfo, last);
+                    }
+                }
+            }
         } finally {
-            em.close();
+            closeEntityManager(em);
         }
 
-        return Response.ok(dtoPerformers).build();
+        return cachedResponse(request, cached, next);
     }
 
     /**
@@ -212,19 +284,26 @@ public class ConcertResource {
      */
     @POST
     @Path("/login")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
     public Response login(UserDTO creds, @CookieParam("auth") Cookie auth) {
         LOGGER.info("Attempting to login");
         NewCookie newCookie = new NewCookie("auth", UUID.randomUUID().toString());
         LOGGER.info("Generated cookie: " + newCookie.getValue());
 
+        User user;
+        String previousToken;
+
         try {
             em.getTransaction().begin();
-            findUserAndAssignToken(em, creds, newCookie);
+            user = findUserByCredentials(em, creds);
+            previousToken = user.getToken();
+            user.setToken(newCookie.getValue());
             em.getTransaction().commit();
         } finally {
-            em.close();
+            closeEntityManager(em);
         }
+        // The old token is only dropped once the new one has committed, see TokenCache
+        TokenCache.instance().replace(user.getId(), previousToken, newCookie.getValue());
 
         return Response.ok().cookie(newCookie).build();
     }
@@ -241,87 +320,381 @@ public class ConcertResource {
      */
     @POST
     @Path("/bookings")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
     public Response makeBookingRequest(BookingRequestDTO bReq, @CookieParam("auth") Cookie auth) throws Exception {
         LOGGER.info("Attempt to create a booking request");
 
-        ArrayList<Seat> seats;
         Booking booking;
-        User user;
-        Concert concert;
+        SeatHold claim = null;
         checkAuthenticationNotNull(auth);
 
         try {
             em.getTransaction().begin();
-            user = authenticate(em, auth);
-            seats = findSeats(em, bReq);
-            concert = findConcert(em, bReq.getConcertId(), "POST");
+            User user = authenticate(em, auth);
+            int[] seatIndices = SeatInventory.instance().checkBookable(bReq.getDate(), bReq.getSeatLabels());
 
-            booking = new Booking(bReq.getConcertId(), bReq.getDate(), seats);
-            booking.setUser(user);
-            em.persist(booking);
+            // Claim the seats first so concurrent requests for them fail fast instead of colliding on the seat rows.
+            // Seats the user already holds are taken over by the claim, and given back to their hold on release.
+            claim = SeatHolds.instance().hold(user.getId(), bReq.getConcertId(), bReq.getDate(), seatIndices, Config.BOOKING_CLAIM_MILLIS);
 
-            double availableSeats = getAvailableSeats(em, booking);
-            double totalSeats = getTotalSeats(em, booking);
+            if (Config.BOOKING_ENGINE_ENABLED) {
+                em.getTransaction().commit();
 
-            // Check seat amount left and push to specific subscriptions
-            int percentageOfSeatsFree = (int) ((availableSeats / totalSeats) * 100);
+                // The writer for the date commits the booking, updates the inventory and notifies listeners
+                booking = BookingEngine.instance().book(user.getId(), bReq);
+            } else {
+                booking = bookOnRequestThread(em, user, bReq);
+                publishBookedSeats(bReq.getConcertId(), bReq.getDate(), bReq.getSeatLabels());
+            }
+        } finally {
+            if (claim != null) {
+                SeatHolds.instance().release(claim);
+            }
+            closeEntityManager(em);
+        }
 
-            ConcertInfoNotificationDTO concertNotificationDTO = new ConcertInfoNotificationDTO((int) availableSeats);
+        return Response.created(URI.create("/concert-service/bookings/" + booking.getId())).build();
+    }
 
-            for (Map.Entry<AsyncResponse, ConcertInfoSubscriptionDTO> entry : subs.entrySet()) {
-                // Check relevant concert information
-                ConcertInfoSubscriptionDTO subscription = entry.getValue();
-                if (subscription.getConcertId() == concert.getId() && concert.getDates().contains(subscription.getDate())) {
-                    if (percentageOfSeatsFree < subscription.getPercentageBooked()) {
-                        entry.getKey().resume(concertNotificationDTO);
+    /**
+     * Attempts to make many bookings for a logged in user at once, e.g. for a reseller. If authentication fails a 401
+     * unauthorized error is returned and nothing is booked. Otherwise each booking succeeds or fails on its own, and
+     * the outcome of each is returned in the order the bookings were submitted.
+     * <p>
+     * When {@link Config#BOOKING_ENGINE_ENABLED} is set, bookings are written by the {@link BookingEngine}, which
+     * commits queued bookings for the same date together and notifies subscribers and seat listeners once per
+     * commit; otherwise each booking is written in its own transaction on the request thread, and listeners are
+     * notified once per concert date. Sharing transactions between bookings needs the engine. A 400 bad request is
+     * returned if more than {@link Config#MAX_BOOKING_BATCH_SIZE} bookings are sent.
+     *
+     * @param bReqs the booking requests
+     * @param auth the user auth token
+     * @return a JSON list with the status and, for successful bookings, the location of each booking
+     */
+    @POST
+    @Path("/bookings/batch")
+    @Consumes({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    @Produces({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    public Response makeBookingRequests(List<BookingRequestDTO> bReqs, @CookieParam("auth") Cookie auth) {
+        LOGGER.info("Attempt to create a batch of booking requests");
+
+        long userId;
+        checkAuthenticationNotNull(auth);
+
+        try {
+            em.getTransaction().begin();
+            userId = authenticateOrUnauthorized(em, auth).getId();
+            em.getTransaction().commit();
+        } finally {
+            closeEntityManager(em);
+        }
+
+        if (bReqs == null || bReqs.isEmpty() || bReqs.size() > Config.MAX_BOOKING_BATCH_SIZE) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+
+        // Queue every valid booking before waiting on any of them, so bookings for the same date share transactions
+        int[] statuses = new int[bReqs.size()];
+        List<CompletableFuture<Booking>> pending = new ArrayList<CompletableFuture<Booking>>();
+        List<SeatHold> claims = new ArrayList<SeatHold>();
+        List<BookingResultDTO> results = new ArrayList<BookingResultDTO>();
+        Map<Long, Map<LocalDateTime, List<String>>> bookedLabels = new LinkedHashMap<>();
+
+        try {
+            for (int i = 0; i < bReqs.size(); i++) {
+                BookingRequestDTO bReq = bReqs.get(i);
+                try {
+                    int[] seatIndices = SeatInventory.instance().checkBookable(bReq.getDate(), bReq.getSeatLabels());
+                    claims.add(SeatHolds.instance().hold(userId, bReq.getConcertId(), bReq.getDate(), seatIndices, Config.BOOKING_CLAIM_MILLIS));
+                    if (Config.BOOKING_ENGINE_ENABLED) {
+                        pending.add(BookingEngine.instance().submit(userId, bReq));
+                    } else {
+                        pending.add(CompletableFuture.completedFuture(bookOnRequestThread(userId, bReq)));
                     }
+                } catch (WebApplicationException e) {
+                    statuses[i] = e.getResponse().getStatus();
+                    pending.add(null);
+                } catch (RuntimeException e) {
+                    LOGGER.error("makeBookingRequests(): Failed to book " + bReq.getSeatLabels(), e);
+                    statuses[i] = Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+                    pending.add(null);
                 }
             }
 
+            for (int i = 0; i < bReqs.size(); i++) {
+                if (pending.get(i) == null) {
+                    results.add(new BookingResultDTO(statuses[i], null));
+                    continue;
+                }
+
+                try {
+                    // Without the engine every booking has already been written
+                    Booking booking = Config.BOOKING_ENGINE_ENABLED
+                            ? BookingEngine.instance().await(pending.get(i))
+                            : pending.get(i).join();
+                    results.add(new BookingResultDTO(Response.Status.CREATED.getStatusCode(),
+                            "/concert-service/bookings/" + booking.getId()));
+                    if (Config.BOOKING_ENGINE_ENABLED) {
+                        // The engine has already notified listeners of its commits
+                        continue;
+                    }
+
+                    List<String> labels = bookedLabels
+                            .computeIfAbsent(booking.getConcertId(), id -> new LinkedHashMap<>())
+                            .computeIfAbsent(booking.getDate(), date -> new ArrayList<String>());
+                    for (Seat seat : booking.getSeats()) {
+                        labels.add(seat.getLabel());
+                    }
+                } catch (WebApplicationException e) {
+                    results.add(new BookingResultDTO(e.getResponse().getStatus(), null));
+                } catch (RuntimeException e) {
+                    results.add(new BookingResultDTO(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), null));
+                }
+            }
+        } finally {
+            for (SeatHold claim : claims) {
+                SeatHolds.instance().release(claim);
+            }
+        }
+
+        for (Map.Entry<Long, Map<LocalDateTime, List<String>>> concert : bookedLabels.entrySet()) {
+            for (Map.Entry<LocalDateTime, List<String>> date : concert.getValue().entrySet()) {
+                publishBookedSeats(concert.getKey(), date.getKey(), date.getValue());
+            }
+        }
+
+        return Response.ok(results).build();
+    }
+
+    /**
+     * Books the seats in its own transaction on the calling thread, for batches made while the booking engine is
+     * disabled.
+     */
+    private static Booking bookOnRequestThread(long userId, BookingRequestDTO bReq) {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            return bookOnRequestThread(em, em.getReference(User.class, userId), bReq);
+        } finally {
+            closeEntityManager(em);
+        }
+    }
+
+    /**
+     * Books the seats in the entity manager's current transaction and commits it, relying on optimistic locking of
+     * the seat rows rather than on the booking engine.
+     */
+    private static Booking bookOnRequestThread(EntityManager em, User user, BookingRequestDTO bReq) {
+        ArrayList<Seat> seats = findSeats(em, bReq);
+        findConcert(em, bReq.getConcertId(), "POST");
+
+        Booking booking = new Booking(bReq.getConcertId(), bReq.getDate(), seats);
+        booking.setUser(user);
+        em.persist(booking);
+
+        em.getTransaction().commit();
+        SeatInventory.instance().markBooked(bReq.getDate(), seats);
+        return booking;
+    }
+
+    /**
+     * Attempts to hold seats for a logged in user, so that nobody else can book or hold them for the next few minutes.
+     * If authentication fails a 401 unauthorized error is returned. If the request is invalid a 400 bad request is
+     * returned, and if any seat is already booked or held by another user a 403 forbidden is returned.
+     *
+     * @param hReq the concert, date and seats to hold
+     * @param auth the user auth token
+     * @return a JSON representation of the hold, including when it expires
+     */
+    @POST
+    @Path("/holds")
+    @Consumes({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    @Produces({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    public Response holdSeats(BookingRequestDTO hReq, @CookieParam("auth") Cookie auth) {
+        LOGGER.info("Attempting to hold seats");
+
+        SeatHold hold;
+        checkAuthenticationNotNull(auth);
+
+        try {
+            em.getTransaction().begin();
+            User user = authenticateOrUnauthorized(em, auth);
+            findConcert(em, hReq.getConcertId(), "POST");
+            int[] seatIndices = SeatInventory.instance().checkBookable(hReq.getDate(), hReq.getSeatLabels());
+            hold = SeatHolds.instance().hold(user.getId(), hReq.getConcertId(), hReq.getDate(), seatIndices, Config.SEAT_HOLD_MILLIS);
             em.getTransaction().commit();
         } finally {
-            em.close();
+            closeEntityManager(em);
         }
 
-        return Response.created(URI.create("/concert-service/bookings/" + booking.getId())).build();
+        return Response.created(URI.create("/concert-service/holds/" + hold.getId())).entity(SeatHoldMapper.toDto(hold)).build();
+    }
+
+    /**
+     * Finds the best block of adjacent free seats for a logged in user and holds it, as for {@link #holdSeats}. Rows
+     * nearest the stage are preferred, and within a row the most central block. If authentication fails a 401
+     * unauthorized error is returned. If the request is invalid a 400 bad request is returned, and if no block of
+     * that size is free a 403 forbidden is returned.
+     *
+     * @param aReq the concert, date, number of seats and optional price band
+     * @param auth the user auth token
+     * @return a JSON representation of the hold, including the seats allocated
+     */
+    @POST
+    @Path("/holds/best-available")
+    @Consumes({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    @Produces({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    public Response holdBestAvailableSeats(SeatAllocationRequestDTO aReq, @CookieParam("auth") Cookie auth) {
+        LOGGER.info("Attempting to hold best available seats");
+
+        SeatHold hold;
+        checkAuthenticationNotNull(auth);
+
+        try {
+            em.getTransaction().begin();
+            User user = authenticateOrUnauthorized(em, auth);
+            findConcert(em, aReq.getConcertId(), "POST");
+
+            TheatreLayout.PriceBand band = null;
+            if (aReq.getPriceBand() != null) {
+                band = TheatreLayout.priceBandNamed(aReq.getPriceBand());
+                if (band == null) {
+                    throw new WebApplicationException(Response.Status.BAD_REQUEST);
+                }
+            }
+
+            int[] seatIndices = SeatAllocator.findBestBlock(aReq.getDate(), user.getId(), aReq.getNumSeats(), band);
+            if (seatIndices == null) {
+                throw new WebApplicationException(Response.Status.FORBIDDEN);
+            }
+            hold = SeatHolds.instance().hold(user.getId(), aReq.getConcertId(), aReq.getDate(), seatIndices, Config.SEAT_HOLD_MILLIS);
+            em.getTransaction().commit();
+        } finally {
+            closeEntityManager(em);
+        }
+
+        return Response.created(URI.create("/concert-service/holds/" + hold.getId())).entity(SeatHoldMapper.toDto(hold)).build();
+    }
+
+    /**
+     * Releases a hold early. If authentication fails a 401 unauthorized error is returned. If the hold does not exist
+     * or has lapsed a 404 not found is returned, and if the hold belongs to another user a 403 forbidden is returned.
+     *
+     * @param holdId the unique id of the hold
+     * @param auth the user auth token
+     * @return a 204 no content response
+     */
+    @DELETE
+    @Path("/holds/{id}")
+    public Response releaseHold(@PathParam("id") long holdId, @CookieParam("auth") Cookie auth) {
+        LOGGER.info("Attempting to release hold");
+
+        checkAuthenticationNotNull(auth);
+
+        try {
+            em.getTransaction().begin();
+            User user = authenticateOrUnauthorized(em, auth);
+            SeatHold hold = SeatHolds.instance().get(holdId);
+            if (hold == null) {
+                throw new WebApplicationException(Response.Status.NOT_FOUND);
+            }
+            if (hold.getUserId() != user.getId()) {
+                throw new WebApplicationException(Response.Status.FORBIDDEN);
+            }
+            SeatHolds.instance().release(hold);
+            em.getTransaction().commit();
+        } finally {
+            closeEntityManager(em);
+        }
+
+        return Response.noContent().build();
     }
 
     /**
      * This function attempts to get seats with a given status for a given date. If successful data is passed with
-     * 200 status code. If any supplied parameters are invalid a 400 bad request code is returned.
+     * 200 status code. If any supplied parameters are invalid a 400 bad request code is returned. If a limit is given
+     * only one page of seats, in seat order, is returned, and a Link header points at the next page.
      * @param dateParam date for given seat
      * @param status the status of a given seat (Any, Booked, Unbooked)
+     * @param limit the maximum number of seats to return, or null for all of them
+     * @param after the label of the last seat on the previous page
      * @param auth the user auth token
+     * @param uriInfo the request URI, used to link to the next page
+     * @param request the request, used to choose the format of a streamed listing
      * @return a JSON representation of all seats with given params
      */
     @GET
     @Path("/seats/{localDateTime}")
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response getSeats(@PathParam("localDateTime") LocalDateTimeParam dateParam, @QueryParam("status") String status, @CookieParam("auth") Cookie auth) {
+    @Produces({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    public Response getSeats(@PathParam("localDateTime") LocalDateTimeParam dateParam, @QueryParam("status") String status,
+                             @QueryParam("limit") Integer limit, @QueryParam("after") String after,
+                             @CookieParam("auth") Cookie auth, @Context UriInfo uriInfo, @Context Request request) {
         LOGGER.info("Attempting to get seats");
 
         LocalDateTime date = dateParam.getLocalDateTime();
         ArrayList<SeatDTO> seats = new ArrayList<SeatDTO>();
-        TypedQuery<Seat> seatQuery;
+        URI next = null;
 
         try {
             BookingStatus bookingStatus = BookingStatus.valueOf(status);
-            em.getTransaction().begin();
-            seatQuery = seatStatusDecisionManager(em, bookingStatus, date);
-            for (Seat seat : seatQuery.getResultList()) {
-                seats.add(new SeatDTO(seat.getLabel(), seat.getPrice()));
+
+            int afterIndex = after == null ? -1 : TheatreLayout.indexOf(after);
+            if (limit != null) {
+                checkPageLimit(limit);
+                if (after != null && afterIndex < 0) {
+                    return Response.status(Response.Status.BAD_REQUEST).build();
+                }
+            }
+
+            // Dates known to the inventory are answered from memory, anything else falls back to the database
+            if (SeatInventory.instance().get(date) != null && limit != null) {
+                // Ask for one seat more than the page holds to find out whether there is a next page
+                seats = SeatInventory.instance().getSeats(date, bookingStatus, afterIndex, limit + 1);
+                if (seats.size() > limit) {
+                    seats = new ArrayList<SeatDTO>(seats.subList(0, limit));
+                    next = nextPageUri(uriInfo, seats.get(limit - 1).getLabel());
+                }
+            } else if (SeatInventory.instance().get(date) != null) {
+                seats = SeatInventory.instance().getSeats(date, bookingStatus);
+            } else {
+                MediaType type = WireFormats.select(request);
+                return Response.ok(streamQuery(type,
+                        streamEm -> seatStatusDecisionManager(streamEm, bookingStatus, date),
+                        SeatMapper::toDto), type).build();
             }
-            em.getTransaction().commit();
         } catch (IllegalArgumentException e) {
             // Catches any illegal arguments supplied in @QueryParam status
             return Response.status(Response.Status.BAD_REQUEST).build();
 
         } finally {
-            em.close();
+            closeEntityManager(em);
         }
 
-        return Response.ok(seats).build();
+        return pagedResponse(seats, next);
+    }
+
+    /**
+     * This function opens a server-sent event stream of seat availability for a given date. The current availability
+     * is sent as soon as the stream opens, followed by an event for every booking made on that date. If there is
+     * no concert on the given date a 404 not found is returned.
+     * @param dateParam date for given seats
+     * @param sink the event stream to the client
+     * @param sse the SSE context used to build events
+     */
+    @GET
+    @Path("/seats/{localDateTime}/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamSeatEvents(@PathParam("localDateTime") LocalDateTimeParam dateParam, @Context SseEventSink sink, @Context Sse sse) {
+        LOGGER.info("Opening seat event stream");
+
+        // The stream is served entirely from memory, so the request's EntityManager is not needed
+        closeEntityManager(em);
+
+        DateInventory inventory = SeatInventory.instance().get(dateParam.getLocalDateTime());
+        if (inventory == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        SeatEventBroadcaster.instance().listen(sse, sink, inventory);
     }
 
     /**
@@ -333,7 +706,7 @@ public class ConcertResource {
      */
     @GET
     @Path("/bookings/{id}")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
     public Response getBookingById(@CookieParam("auth") Cookie auth, @PathParam("id") long bookingId) {
         LOGGER.info("Attempting to get booking by id");
 
@@ -347,14 +720,15 @@ public class ConcertResource {
             Booking booking = em.find(Booking.class, bookingId);
             dtoBooking = BookingMapper.toDto(booking);
 
-            if (booking.getUser().equals(user)) {
+            // Compare ids since an authenticated user may be an uninitialised reference
+            if (booking.getUser().getId().equals(user.getId())) {
                 return Response.ok(dtoBooking).build();
             }
             em.getTransaction().commit();
         } catch (Exception e) {
             return Response.status(Response.Status.UNAUTHORIZED).build();
         } finally {
-            em.close();
+            closeEntityManager(em);
         }
 
         return Response.status(Response.Status.FORBIDDEN).build();
@@ -362,41 +736,81 @@ public class ConcertResource {
 
     /**
      * This function attempts to retrieve all bookings for a user. If authentication fails a 401 unauthorised
-     * error code is returned. Otherwise bookings for a given user are returned.
+     * error code is returned. Otherwise bookings for a given user are returned. If a limit is given only one page of
+     * bookings, oldest first, is returned, and a Link header points at the next page.
+     * @param limit the maximum number of bookings to return, or null for all of them
+     * @param after the id of the last booking on the previous page
      * @param auth the user auth token
+     * @param uriInfo the request URI, used to link to the next page
+     * @param request the request, used to choose the format of a streamed listing
      * @return a JSON representation of users bookings.
      */
     @GET
     @Path("/bookings")
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response getUserBookings(@CookieParam("auth") Cookie auth) {
+    @Produces({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    public Response getUserBookings(@QueryParam("limit") Integer limit, @QueryParam("after") @DefaultValue("0") long after,
+                                    @CookieParam("auth") Cookie auth, @Context UriInfo uriInfo,
+                                    @Context Request request) {
         LOGGER.info("Attempting to get user bookings");
 
         ArrayList<BookingDTO> bookingDTOS = new ArrayList<BookingDTO>();
+        URI next = null;
 
         try {
+            if (limit != null) {
+                checkPageLimit(limit);
+            }
             em.getTransaction().begin();
             User user = authenticate(em, auth);
 
-            List<Booking> bookings = user.getBookings();
+            List<Booking> bookings;
+            if (limit == null) {
+                // Unpaged listings can be arbitrarily long, so they are written as they are read
+                long userId = user.getId();
+                em.getTransaction().commit();
+                MediaType type = WireFormats.select(request);
+                return Response.ok(streamGroupedQuery(type,
+                        streamEm -> streamEm
+                                .createNamedQuery(Booking.FIND_SEATS_BY_USER, Object[].class)
+                                .setParameter("userId", userId),
+                        row -> row[0],
+                        BookingMapper::toDto), type).build();
+            } else {
+                // Seek past the previous page on the primary key rather than skipping rows with OFFSET, and ask for
+                // one booking more than the page holds to find out whether there is a next page
+                bookings = em
+                        .createNamedQuery(Booking.FIND_BY_USER_AFTER, Booking.class)
+                        .setParameter("userId", user.getId())
+                        .setParameter("after", after)
+                        .setMaxResults(limit + 1)
+                        .getResultList();
+                if (bookings.size() > limit) {
+                    bookings = bookings.subList(0, limit);
+                    next = nextPageUri(uriInfo, bookings.get(limit - 1).getId());
+                }
+            }
             for (Booking booking : bookings) {
                 bookingDTOS.add(BookingMapper.toDto(booking));
             }
             em.getTransaction().commit();
+        } catch (WebApplicationException e) {
+            throw e;
         } catch (Exception e) {
             return Response.status(Response.Status.UNAUTHORIZED).build();
         } finally {
-            em.close();
+            closeEntityManager(em);
         }
 
-        return Response.ok(bookingDTOS).build();
+        return pagedResponse(bookingDTOS, next);
     }
 
     /**
      * This function subscribes a user to a given concert to be notified when a specific percentage of seats
      * have been booked. If the user is not logged in a 401 unauthorised code is returned. If params are invalid
      * a 400 bad request error code is returned. When the percentage of seats booked for given concert is
-     * greater than or equal to the supplied percentage this function will return a ConcertInfoNotification DTO
+     * greater than or equal to the supplied percentage this function will return a ConcertInfoNotification DTO.
+     * If no notification arrives before the subscription times out a 204 no content is returned, and a 429 too many
+     * requests is returned if the user already has too many outstanding subscriptions.
      * @param sub the AsyncResponse object
      * @param auth the user auth token
      * @param subscriptionDTO subscription info
@@ -404,26 +818,29 @@ public class ConcertResource {
      */
     @POST
     @Path("/subscribe/concertInfo")
-    @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
+    @Produces({MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE})
     public void subscribeToConcert(@Suspended AsyncResponse sub, @CookieParam("auth") Cookie auth, ConcertInfoSubscriptionDTO subscriptionDTO) throws InterruptedException {
         LOGGER.info("Attempting to subscribe user to concert");
 
         Concert concert;
+        User user;
         checkAuthenticationNotNull(auth);
 
         try {
             em.getTransaction().begin();
+            user = authenticateOrUnauthorized(em, auth);
+
             // Check ConcertInfoSubscriptionDTO values
             concert = findConcert(em, subscriptionDTO.getConcertId(), "POST");
             if (!concert.getDates().contains(subscriptionDTO.getDate())) {
                 sub.resume(Response.status(Response.Status.BAD_REQUEST).build());
             } else {
-                subs.put(sub, subscriptionDTO);
+                SubscriptionRegistry.instance().register(subscriptionDTO, sub, user.getId());
             }
             em.getTransaction().commit();
         } finally {
-            em.close();
+            closeEntityManager(em);
         }
     }
 }
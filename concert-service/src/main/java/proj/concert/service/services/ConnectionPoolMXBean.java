@@ -0,0 +1,47 @@
+package proj.concert.service.services;
+
+/**
+ * Gauges describing the database connection pool, exported over JMX.
+ */
+public interface ConnectionPoolMXBean {
+
+    /**
+     * Number of connections currently lent out.
+     */
+    int getActiveConnections();
+
+    /**
+     * Number of open connections waiting in the pool.
+     */
+    int getIdleConnections();
+
+    /**
+     * Number of threads waiting for a connection.
+     */
+    int getWaitingThreads();
+
+    /**
+     * Number of open connections, whether active or idle.
+     */
+    int getTotalConnections();
+
+    /**
+     * Number of connections handed out since start-up.
+     */
+    long getAcquireCount();
+
+    /**
+     * Mean time taken to hand out a connection, in milliseconds.
+     */
+    double getAverageAcquireMillis();
+
+    /**
+     * Longest time taken to hand out a connection, in milliseconds.
+     */
+    double getMaxAcquireMillis();
+
+    /**
+     * Number of requests that gave up waiting for a connection.
+     */
+    long getTimeoutCount();
+}
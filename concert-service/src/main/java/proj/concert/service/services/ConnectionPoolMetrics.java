@@ -0,0 +1,85 @@
+package proj.concert.service.services;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects statistics from the connection pool for {@link ConnectionPoolMXBean}. The pool reports the time taken
+ * by every connection request, and its sizes are read from the pool when a gauge is read.
+ */
+class ConnectionPoolMetrics implements MetricsTrackerFactory, ConnectionPoolMXBean {
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+    private final LongAdder timeoutCount = new LongAdder();
+    private volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquireCount.increment();
+                acquireNanos.add(elapsedAcquiredNanos);
+                maxAcquireNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeoutCount.increment();
+            }
+        };
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return poolStats == null ? 0 : poolStats.getActiveConnections();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return poolStats == null ? 0 : poolStats.getIdleConnections();
+    }
+
+    @Override
+    public int getWaitingThreads() {
+        return poolStats == null ? 0 : poolStats.getPendingThreads();
+    }
+
+    @Override
+    public int getTotalConnections() {
+        return poolStats == null ? 0 : poolStats.getTotalConnections();
+    }
+
+    @Override
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    @Override
+    public double getAverageAcquireMillis() {
+        long count = acquireCount.sum();
+        return count == 0 ? 0 : toMillis(acquireNanos.sum()) / count;
+    }
+
+    @Override
+    public double getMaxAcquireMillis() {
+        return toMillis(maxAcquireNanos.get());
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    private static double toMillis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
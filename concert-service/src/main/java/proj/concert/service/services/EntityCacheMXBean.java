@@ -0,0 +1,28 @@
+package proj.concert.service.services;
+
+/**
+ * Hit and miss counts for the second-level entity cache and the query cache, exported over JMX. Counts restart from
+ * zero whenever the database is reset.
+ */
+public interface EntityCacheMXBean {
+
+    /**
+     * Number of entities and collections found in the second-level cache.
+     */
+    long getSecondLevelCacheHitCount();
+
+    /**
+     * Number of entities and collections looked up in the second-level cache but loaded from the database.
+     */
+    long getSecondLevelCacheMissCount();
+
+    /**
+     * Number of query results found in the query cache.
+     */
+    long getQueryCacheHitCount();
+
+    /**
+     * Number of cacheable queries that had to be run against the database.
+     */
+    long getQueryCacheMissCount();
+}
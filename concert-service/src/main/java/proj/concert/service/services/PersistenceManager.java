@@ -1,8 +1,23 @@
 package proj.concert.service.services;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import proj.concert.service.common.Config;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Singleton class that manages an EntityManagerFactory. When a
@@ -14,22 +29,35 @@ import javax.persistence.Persistence;
  * persistence context, it should call the PersistentManager's
  * createEntityManager() method to acquire one.
  * <p>
- * This class is complete - you do not need to modify it.
+ * Connections come from a pool owned by the PersistenceManager, which outlives
+ * the EntityManagerFactory across resets. The pool's gauges are exported over
+ * JMX through {@link ConnectionPoolMXBean}, the hit rates of the
+ * second-level and query caches through {@link EntityCacheMXBean}, and the
+ * timings of the named queries through {@link QueryRegistryMXBean}.
  */
-public class PersistenceManager {
+public class PersistenceManager implements EntityCacheMXBean {
+    private static Logger LOGGER = LoggerFactory.getLogger(PersistenceManager.class);
+
     private static PersistenceManager instance = null;
 
+    private final HikariDataSource dataSource;
+
     private EntityManagerFactory entityManagerFactory;
 
     protected PersistenceManager() {
-        entityManagerFactory = Persistence.createEntityManagerFactory("proj.concert");
+        ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+        dataSource = createDataSource(metrics);
+        registerMBean(metrics, "proj.concert.service:type=ConnectionPool");
+        registerMBean(this, "proj.concert.service:type=EntityCache");
+        registerMBean(new QueryRegistry(() -> entityManagerFactory), "proj.concert.service:type=QueryRegistry");
+        entityManagerFactory = createEntityManagerFactory();
     }
 
     public EntityManager createEntityManager() {
         return entityManagerFactory.createEntityManager();
     }
 
-    public static PersistenceManager instance() {
+    public static synchronized PersistenceManager instance() {
         if (instance == null) {
             instance = new PersistenceManager();
         }
@@ -38,8 +66,68 @@ public class PersistenceManager {
 
     // FOR TESTING ONLY! Will wipe the database.
     public void reset() {
+        // Cached concerts and performers would otherwise outlive the rows they were read from
+        entityManagerFactory.getCache().evictAll();
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions();
         entityManagerFactory.close();
-        entityManagerFactory = Persistence.createEntityManagerFactory("proj.concert");
+        entityManagerFactory = createEntityManagerFactory();
+        QueryTimer.reset();
+    }
+
+    private EntityManagerFactory createEntityManagerFactory() {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("javax.persistence.nonJtaDataSource", dataSource);
+        return Persistence.createEntityManagerFactory("proj.concert", properties);
+    }
+
+    private static HikariDataSource createDataSource(ConnectionPoolMetrics metrics) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("concert-db");
+        config.setDriverClassName("org.h2.Driver");
+        config.setJdbcUrl(Config.DATABASE_URL);
+        config.setUsername(Config.DATABASE_USER);
+        config.setPassword(Config.DATABASE_PASSWORD);
+        config.setMaximumPoolSize(Config.CONNECTION_POOL_SIZE);
+        config.setConnectionTimeout(Config.CONNECTION_TIMEOUT_MILLIS);
+        config.setLeakDetectionThreshold(Config.CONNECTION_LEAK_THRESHOLD_MILLIS);
+        config.setMetricsTrackerFactory(metrics);
+        return new HikariDataSource(config);
+    }
+
+    @Override
+    public long getSecondLevelCacheHitCount() {
+        return statistics().getSecondLevelCacheHitCount();
     }
 
+    @Override
+    public long getSecondLevelCacheMissCount() {
+        return statistics().getSecondLevelCacheMissCount();
+    }
+
+    @Override
+    public long getQueryCacheHitCount() {
+        return statistics().getQueryCacheHitCount();
+    }
+
+    @Override
+    public long getQueryCacheMissCount() {
+        return statistics().getQueryCacheMissCount();
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private static void registerMBean(Object mbean, String objectName) {
+        try {
+            ObjectName name = new ObjectName(objectName);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+        } catch (JMException e) {
+            LOGGER.warn("registerMBean(): Could not export " + objectName, e);
+        }
+    }
 }
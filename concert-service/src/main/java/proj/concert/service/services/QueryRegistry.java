@@ -0,0 +1,59 @@
+package proj.concert.service.services;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.metamodel.EntityType;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Catalogue of the {@link NamedQuery}s declared on the entities. Named queries are parsed and checked once, when the
+ * EntityManagerFactory is built, so a broken query stops the service from starting rather than failing the first
+ * request that runs it, and no request pays for parsing or planning a query.
+ * <p>
+ * The registry reports how long each named query has taken in total, as timed by {@link QueryTimer}, so that the most
+ * expensive query is easy to spot.
+ */
+class QueryRegistry implements QueryRegistryMXBean {
+
+    private final Supplier<EntityManagerFactory> entityManagerFactory;
+    private volatile Map<String, String> queriesByName;
+
+    QueryRegistry(Supplier<EntityManagerFactory> entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public List<QueryTiming> getQueryTimings() {
+        List<QueryTiming> timings = new ArrayList<QueryTiming>();
+        for (String name : getQueriesByName().keySet()) {
+            timings.add(QueryTimer.timingOf(name));
+        }
+        timings.sort(Comparator.comparingLong(QueryTiming::getTotalNanos).reversed());
+        return timings;
+    }
+
+    /**
+     * Returns the JPQL of every named query, keyed by name. The entity classes are only scanned once.
+     */
+    Map<String, String> getQueriesByName() {
+        if (queriesByName == null) {
+            Map<String, String> queries = new TreeMap<String, String>();
+            for (EntityType<?> entity : entityManagerFactory.get().getMetamodel().getEntities()) {
+                NamedQueries namedQueries = entity.getJavaType().getAnnotation(NamedQueries.class);
+                if (namedQueries != null) {
+                    for (NamedQuery namedQuery : namedQueries.value()) {
+                        queries.put(namedQuery.name(), namedQuery.query());
+                    }
+                }
+            }
+            queriesByName = queries;
+        }
+        return queriesByName;
+    }
+}
@@ -0,0 +1,15 @@
+package proj.concert.service.services;
+
+import java.util.List;
+
+/**
+ * Timings of the named queries declared on the entities, exported over JMX. Timings restart from zero whenever the
+ * database is reset.
+ */
+public interface QueryRegistryMXBean {
+
+    /**
+     * Timings for every named query, the query with the most total execution time first.
+     */
+    List<QueryTiming> getQueryTimings();
+}
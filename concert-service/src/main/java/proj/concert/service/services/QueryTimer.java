@@ -0,0 +1,88 @@
+package proj.concert.service.services;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.SessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times the execution of every named query in nanoseconds. Hibernate's own query statistics only count whole
+ * milliseconds, which rounds nearly every query this service runs down to nothing.
+ * <p>
+ * Each named query carries its name as a comment at the start of its SQL. As a {@link StatementInspector}, the timer
+ * reads that name as each statement is prepared and remembers it for the current thread; as a
+ * {@link SessionEventListener}, it then times the statement's execution and adds it to the totals for that name.
+ * Hibernate creates one instance to inspect statements and one listener per session, so the totals are shared.
+ */
+public class QueryTimer extends BaseSessionEventListener implements StatementInspector {
+
+    private static final Map<String, Totals> TOTALS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<String> PREPARED_QUERY = new ThreadLocal<>();
+
+    private long executionStartNanos;
+
+    @Override
+    public String inspect(String sql) {
+        PREPARED_QUERY.set(nameOf(sql));
+        return sql;
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executionStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        String name = PREPARED_QUERY.get();
+        if (name != null) {
+            TOTALS.computeIfAbsent(name, n -> new Totals()).add(System.nanoTime() - executionStartNanos);
+        }
+    }
+
+    /**
+     * Returns how often and for how long the named query has run.
+     */
+    static QueryTiming timingOf(String name) {
+        Totals totals = TOTALS.get(name);
+        if (totals == null) {
+            return new QueryTiming(name, 0, 0, 0);
+        }
+        return new QueryTiming(name, totals.count.sum(), totals.totalNanos.sum(), totals.maxNanos.get());
+    }
+
+    /**
+     * Discards the timings of every named query.
+     */
+    static void reset() {
+        TOTALS.clear();
+    }
+
+    /**
+     * Returns the name in the comment the SQL starts with, or null if it has none.
+     */
+    private static String nameOf(String sql) {
+        if (!sql.startsWith("/* ")) {
+            return null;
+        }
+        int end = sql.indexOf(" */");
+        return end < 0 ? null : sql.substring(3, end);
+    }
+
+    private static class Totals {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void add(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package proj.concert.service.services;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * How often a named query has run and how long it took, as reported by {@link QueryRegistryMXBean}.
+ */
+public class QueryTiming {
+
+    private final String name;
+    private final long executionCount;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    @ConstructorProperties({"name", "executionCount", "totalNanos", "maxNanos"})
+    public QueryTiming(String name, long executionCount, long totalNanos, long maxNanos) {
+        this.name = name;
+        this.executionCount = executionCount;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getAverageNanos() {
+        return executionCount == 0 ? 0 : totalNanos / executionCount;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+}
@@ -4,6 +4,10 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.core.Response;
 
+import proj.concert.service.cache.CatalogCache;
+import proj.concert.service.cache.TokenCache;
+import proj.concert.service.inventory.SeatHolds;
+import proj.concert.service.subscription.SubscriptionRegistry;
 import proj.concert.service.util.ConcertUtils;
 
 /**
@@ -20,6 +24,10 @@ public class TestResource {
     public Response resetDatabase() {
 
         PersistenceManager.instance().reset();
+        TokenCache.instance().clear();
+        CatalogCache.instance().invalidate();
+        SeatHolds.instance().clear();
+        SubscriptionRegistry.instance().clear();
         ConcertUtils.initConcerts();
         return Response.noContent().build();
     }
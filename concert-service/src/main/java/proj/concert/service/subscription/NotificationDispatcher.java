@@ -0,0 +1,99 @@
+package proj.concert.service.subscription;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import proj.concert.common.dto.ConcertInfoNotificationDTO;
+import proj.concert.service.common.Config;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Singleton that delivers {@link ConcertInfoNotificationDTO}s to subscribers on its own pool of daemon threads, so
+ * that a booking never waits on the network writes to its subscribers.
+ * <p>
+ * Notifications are queued on a bounded queue. When the queue is full the notification is dropped and logged, so
+ * that a slow subscriber can never hold up the booking thread. Subscribers whose notification is dropped see their
+ * subscription time out instead, and resubscribe. The number of dropped notifications is reported by
+ * {@link #getDroppedCount()}.
+ */
+public class NotificationDispatcher {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private static NotificationDispatcher instance = null;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    protected NotificationDispatcher() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "notification-dispatcher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        executor = new ThreadPoolExecutor(
+                Config.NOTIFICATION_DISPATCHER_THREADS, Config.NOTIFICATION_DISPATCHER_THREADS,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Config.NOTIFICATION_QUEUE_CAPACITY),
+                threadFactory,
+                (task, pool) -> {
+                    droppedCount.incrementAndGet();
+                    if (pool.isShutdown()) {
+                        LOGGER.error("dispatch(): Dispatcher has been shut down, dropping notification");
+                    } else {
+                        LOGGER.warn("dispatch(): Notification queue is full, dropping notification");
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized NotificationDispatcher instance() {
+        if (instance == null) {
+            instance = new NotificationDispatcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues the notification for delivery to each of the given subscribers. Must only be called once the booking
+     * that triggered the notification has been committed.
+     */
+    public void dispatch(List<Subscriber> subscribers, ConcertInfoNotificationDTO notification) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        executor.execute(() -> {
+            for (Subscriber subscriber : subscribers) {
+                try {
+                    subscriber.getResponse().resume(notification);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("dispatch(): Failed to notify subscriber", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the number of notification batches waiting to be delivered.
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the number of notification batches dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
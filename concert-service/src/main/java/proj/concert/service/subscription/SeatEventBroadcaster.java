@@ -0,0 +1,138 @@
+package proj.concert.service.subscription;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import proj.concert.common.dto.SeatAvailabilityDTO;
+import proj.concert.service.common.Config;
+import proj.concert.service.inventory.DateInventory;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseBroadcaster;
+import javax.ws.rs.sse.SseEventSink;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Singleton that streams {@link SeatAvailabilityDTO} updates to clients listening for server-sent events about a
+ * concert date. Each date has one shared {@link SseBroadcaster}, and every update is serialised to JSON once before
+ * it is broadcast, so the cost of an update does not grow with the number of listeners beyond the socket writes.
+ * <p>
+ * Broadcasts must only be published once a booking commits. They are sent by a single daemon thread of their own, so
+ * listeners receive the events for a date in the order they were published and subscription notifications never
+ * queue behind them. Broadcasts wait on a bounded queue; when it is full the event is dropped and logged, and counted
+ * by {@link #getDroppedCount()}. Listeners then miss the labels of the seats in that event, but every event carries
+ * the availability that remains, so the next one brings their counts up to date. A listener that needs every booked
+ * seat reconnects to get a fresh snapshot.
+ */
+public class SeatEventBroadcaster {
+
+    public static final String EVENT_NAME = "seats";
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SeatEventBroadcaster.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static SeatEventBroadcaster instance = null;
+
+    private final Map<LocalDateTime, DateChannel> channels = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    protected SeatEventBroadcaster() {
+        executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Config.SEAT_EVENT_QUEUE_CAPACITY),
+                r -> {
+                    Thread thread = new Thread(r, "seat-event-broadcaster");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, pool) -> {
+                    droppedCount.incrementAndGet();
+                    LOGGER.warn("publish(): Seat event queue is full, dropping seat event");
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized SeatEventBroadcaster instance() {
+        if (instance == null) {
+            instance = new SeatEventBroadcaster();
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a new listener for updates about the date, then sends it the current availability. Registering first
+     * means that a booking made in between is reported rather than missed, as the snapshot is read afterwards.
+     */
+    public void listen(Sse sse, SseEventSink sink, DateInventory inventory) {
+        DateChannel channel = channels.computeIfAbsent(inventory.getDate(), date -> new DateChannel(sse, date));
+        channel.broadcaster.register(sink);
+
+        sink.send(channel.toEvent(new SeatAvailabilityDTO(inventory.getDate(), new ArrayList<String>(),
+                inventory.getAvailableCount(), inventory.getTotalCount())));
+    }
+
+    /**
+     * Broadcasts newly booked seats, and the availability that remains, to every listener for the date.
+     */
+    public void publish(DateInventory inventory, List<String> bookedSeatLabels) {
+        DateChannel channel = channels.get(inventory.getDate());
+        if (channel == null) {
+            return;
+        }
+
+        OutboundSseEvent event = channel.toEvent(new SeatAvailabilityDTO(inventory.getDate(), bookedSeatLabels,
+                inventory.getAvailableCount(), inventory.getTotalCount()));
+        executor.execute(() -> channel.broadcaster.broadcast(event));
+    }
+
+    /**
+     * Returns the number of seat events dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * The broadcaster for a single concert date, together with the {@link Sse} context it was created from and that
+     * its events are built with.
+     */
+    private static class DateChannel {
+
+        private final Sse sse;
+        private final SseBroadcaster broadcaster;
+
+        DateChannel(Sse sse, LocalDateTime date) {
+            this.sse = sse;
+            this.broadcaster = sse.newBroadcaster();
+            broadcaster.onError((closed, throwable) -> LOGGER.debug("listen(): Dropping seat event listener for " + date));
+        }
+
+        OutboundSseEvent toEvent(SeatAvailabilityDTO availability) {
+            String json;
+            try {
+                json = MAPPER.writeValueAsString(availability);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Could not serialise seat availability", e);
+            }
+
+            return sse.newEventBuilder()
+                    .name(EVENT_NAME)
+                    .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                    .data(String.class, json)
+                    .build();
+        }
+    }
+}
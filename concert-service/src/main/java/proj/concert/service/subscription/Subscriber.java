@@ -0,0 +1,33 @@
+package proj.concert.service.subscription;
+
+import proj.concert.common.dto.ConcertInfoSubscriptionDTO;
+
+import javax.ws.rs.container.AsyncResponse;
+
+/**
+ * A client waiting on a suspended {@link AsyncResponse} to be told when a concert date passes a booking threshold.
+ */
+public class Subscriber {
+
+    private final ConcertInfoSubscriptionDTO subscription;
+    private final AsyncResponse response;
+    private final long userId;
+
+    public Subscriber(ConcertInfoSubscriptionDTO subscription, AsyncResponse response, long userId) {
+        this.subscription = subscription;
+        this.response = response;
+        this.userId = userId;
+    }
+
+    public ConcertInfoSubscriptionDTO getSubscription() {
+        return subscription;
+    }
+
+    public AsyncResponse getResponse() {
+        return response;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,257 @@
+package proj.concert.service.subscription;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import proj.concert.common.dto.ConcertInfoSubscriptionDTO;
+import proj.concert.service.common.Config;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.ConnectionCallback;
+import javax.ws.rs.core.Response;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Singleton registry of clients waiting for concert info notifications. Subscribers are indexed by concert and date,
+ * and within each date they are ordered by their percentageBooked threshold. A booking therefore only visits the
+ * subscribers whose threshold it has crossed, and those subscribers are removed as they are handed back.
+ * <p>
+ * Every registered response is suspended with a timeout and removed from the registry as soon as it completes for
+ * any reason (notified, timed out, cancelled or disconnected). RESTEasy never reports disconnects through
+ * {@link ConnectionCallback}, so the subscriptions of a client that has gone away are only removed once they are
+ * notified or time out. The number of outstanding subscriptions is capped both per user and overall, so the
+ * registry cannot grow without bound. Its size is exported over JMX through {@link SubscriptionRegistryMXBean}.
+ */
+public class SubscriptionRegistry implements SubscriptionRegistryMXBean {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SubscriptionRegistry.class);
+
+    private static SubscriptionRegistry instance = null;
+
+    private final Map<ConcertDate, DateSubscribers> subscribers = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> subscriptionsPerUser = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    protected SubscriptionRegistry() {
+    }
+
+    public static synchronized SubscriptionRegistry instance() {
+        if (instance == null) {
+            instance = new SubscriptionRegistry();
+            registerMBean(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a client to be notified about the concert and date in the given subscription. The response is
+     * suspended for at most {@link Config#SUBSCRIPTION_TIMEOUT_SECONDS}, after which it is resumed with a 204 No
+     * Content so the client knows to subscribe again.
+     * <p>
+     * A 429 Too Many Requests is thrown if the user already has {@link Config#MAX_SUBSCRIPTIONS_PER_USER}
+     * outstanding subscriptions, and a 503 Service Unavailable is thrown if the registry is full.
+     */
+    public Subscriber register(ConcertInfoSubscriptionDTO subscription, AsyncResponse response, long userId) {
+        if (size.incrementAndGet() > Config.MAX_SUBSCRIPTIONS) {
+            size.decrementAndGet();
+            throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+        }
+        if (subscriptionsPerUser.merge(userId, 1, Integer::sum) > Config.MAX_SUBSCRIPTIONS_PER_USER) {
+            release(userId);
+            throw new WebApplicationException(Response.Status.TOO_MANY_REQUESTS);
+        }
+
+        Subscriber subscriber = new Subscriber(subscription, response, userId);
+        response.setTimeout(Config.SUBSCRIPTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        response.setTimeoutHandler(timedOut -> timedOut.resume(Response.noContent().build()));
+        response.register((CompletionCallback) throwable -> remove(subscriber));
+        response.register((ConnectionCallback) disconnected -> {
+            remove(subscriber);
+            disconnected.cancel();
+        });
+
+        subscribers
+                .computeIfAbsent(new ConcertDate(subscription.getConcertId(), subscription.getDate()), k -> new DateSubscribers())
+                .add(subscriber);
+
+        // The response may have completed before it was indexed, in which case its callback found nothing to remove
+        if (response.isDone()) {
+            remove(subscriber);
+        }
+        return subscriber;
+    }
+
+    /**
+     * Removes and returns every subscriber to the concert date whose threshold is greater than the given percentage
+     * of seats still free.
+     */
+    public List<Subscriber> removeTriggered(long concertId, LocalDateTime date, int percentageOfSeatsFree) {
+        DateSubscribers dateSubscribers = subscribers.get(new ConcertDate(concertId, date));
+        if (dateSubscribers == null) {
+            return new ArrayList<Subscriber>();
+        }
+
+        List<Subscriber> triggered = dateSubscribers.removeAbove(percentageOfSeatsFree);
+        for (Subscriber subscriber : triggered) {
+            release(subscriber.getUserId());
+        }
+        return triggered;
+    }
+
+    /**
+     * Removes a single subscriber, e.g. because its response has already completed.
+     *
+     * @return true if the subscriber was still registered
+     */
+    public boolean remove(Subscriber subscriber) {
+        ConcertInfoSubscriptionDTO subscription = subscriber.getSubscription();
+        DateSubscribers dateSubscribers = subscribers.get(new ConcertDate(subscription.getConcertId(), subscription.getDate()));
+        if (dateSubscribers != null && dateSubscribers.remove(subscriber)) {
+            release(subscriber.getUserId());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Answers every waiting subscriber with a 204 No Content and empties the registry.
+     */
+    public void clear() {
+        for (DateSubscribers dateSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : dateSubscribers.removeAbove(-1)) {
+                release(subscriber.getUserId());
+                subscriber.getResponse().resume(Response.noContent().build());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of subscribers currently waiting.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int getSubscriberCount() {
+        return size();
+    }
+
+    @Override
+    public int getSubscribedUserCount() {
+        return subscriptionsPerUser.size();
+    }
+
+    @Override
+    public int getPendingNotificationCount() {
+        return NotificationDispatcher.instance().getQueueSize();
+    }
+
+    private void release(long userId) {
+        size.decrementAndGet();
+        subscriptionsPerUser.computeIfPresent(userId, (k, count) -> count == 1 ? null : count - 1);
+    }
+
+    private static void registerMBean(SubscriptionRegistry registry) {
+        try {
+            ObjectName name = new ObjectName("proj.concert.service:type=SubscriptionRegistry");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(registry, name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("registerMBean(): Could not export subscription gauges", e);
+        }
+    }
+
+    /**
+     * The subscribers to a single concert date, grouped by threshold.
+     */
+    private static class DateSubscribers {
+
+        private final TreeMap<Integer, Set<Subscriber>> byThreshold = new TreeMap<>();
+
+        synchronized void add(Subscriber subscriber) {
+            byThreshold
+                    .computeIfAbsent(subscriber.getSubscription().getPercentageBooked(), k -> new LinkedHashSet<>())
+                    .add(subscriber);
+        }
+
+        synchronized boolean remove(Subscriber subscriber) {
+            int threshold = subscriber.getSubscription().getPercentageBooked();
+            Set<Subscriber> atThreshold = byThreshold.get(threshold);
+            if (atThreshold == null || !atThreshold.remove(subscriber)) {
+                return false;
+            }
+            if (atThreshold.isEmpty()) {
+                byThreshold.remove(threshold);
+            }
+            return true;
+        }
+
+        synchronized List<Subscriber> removeAbove(int percentage) {
+            List<Subscriber> removed = new ArrayList<Subscriber>();
+            NavigableMap<Integer, Set<Subscriber>> above = byThreshold.tailMap(percentage, false);
+            for (Iterator<Set<Subscriber>> it = above.values().iterator(); it.hasNext(); ) {
+                removed.addAll(it.next());
+                it.remove();
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Key identifying a single performance of a concert.
+     */
+    private static class ConcertDate {
+
+        private final long concertId;
+        private final LocalDateTime date;
+
+        ConcertDate(long concertId, LocalDateTime date) {
+            this.concertId = concertId;
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+
+            if (o == null || getClass() != o.getClass()) return false;
+
+            ConcertDate that = (ConcertDate) o;
+
+            return new EqualsBuilder()
+                    .append(concertId, that.concertId)
+                    .append(date, that.date)
+                    .isEquals();
+        }
+
+        @Override
+        public int hashCode() {
+            return new HashCodeBuilder(17, 37)
+                    .append(concertId)
+                    .append(date)
+                    .toHashCode();
+        }
+    }
+}
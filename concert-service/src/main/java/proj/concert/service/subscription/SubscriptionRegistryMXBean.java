@@ -0,0 +1,22 @@
+package proj.concert.service.subscription;
+
+/**
+ * Gauges describing the concert info subscriptions currently held in memory, exported over JMX.
+ */
+public interface SubscriptionRegistryMXBean {
+
+    /**
+     * Number of clients waiting for a notification.
+     */
+    int getSubscriberCount();
+
+    /**
+     * Number of distinct users with at least one outstanding subscription.
+     */
+    int getSubscribedUserCount();
+
+    /**
+     * Number of notification batches queued for delivery.
+     */
+    int getPendingNotificationCount();
+}
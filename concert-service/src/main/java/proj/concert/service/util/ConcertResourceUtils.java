@@ -1,23 +1,48 @@
 package proj.concert.service.util;
 
+import org.hibernate.exception.ConstraintViolationException;
+
 import proj.concert.common.dto.BookingRequestDTO;
+import proj.concert.common.dto.ConcertInfoNotificationDTO;
 import proj.concert.common.dto.PerformerDTO;
 import proj.concert.common.dto.UserDTO;
 import proj.concert.common.types.BookingStatus;
+import proj.concert.service.cache.CachedResponse;
+import proj.concert.service.cache.TokenCache;
+import proj.concert.service.common.Config;
 import proj.concert.service.domain.*;
+import proj.concert.service.inventory.DateInventory;
+import proj.concert.service.inventory.SeatInventory;
+import proj.concert.service.jaxrs.GzipEncoding;
+import proj.concert.service.jaxrs.PrecompressedEntity;
+import proj.concert.service.jaxrs.WireFormats;
+import proj.concert.service.subscription.NotificationDispatcher;
+import proj.concert.service.subscription.SeatEventBroadcaster;
+import proj.concert.service.subscription.Subscriber;
+import proj.concert.service.subscription.SubscriptionRegistry;
 
 import javax.persistence.EntityManager;
 import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
+import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Cookie;
-import javax.ws.rs.core.NewCookie;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.net.URI;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.hibernate.tool.schema.SchemaToolingLogging.LOGGER;
 
@@ -28,18 +53,18 @@ import static org.hibernate.tool.schema.SchemaToolingLogging.LOGGER;
 public class ConcertResourceUtils {
 
     // User helper functions
-    public static void findUserAndAssignToken(EntityManager em, UserDTO dtoUser, NewCookie cookie) {
-        User domainUser = new User(dtoUser.getUsername(), dtoUser.getPassword());
-        User user;
+    /**
+     * Finds the user with the given credentials, locked so that concurrent logins cannot both assign a token. A 401
+     * Unauthorized is thrown when there is no such user.
+     */
+    public static User findUserByCredentials(EntityManager em, UserDTO dtoUser) {
         try {
-            user = em
-                    .createQuery("select u from User u where u.username=:username and u.password=:password", User.class)
-                    .setParameter("username", domainUser.getUsername())
-                    .setParameter("password", domainUser.getPassword())
+            return em
+                    .createNamedQuery(User.FIND_BY_CREDENTIALS, User.class)
+                    .setParameter("username", dtoUser.getUsername())
+                    .setParameter("password", dtoUser.getPassword())
                     .setLockMode(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
                     .getSingleResult();
-            user.setToken(cookie.getValue());
-            em.merge(user);
         } catch (NoResultException e) {
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
@@ -54,19 +79,53 @@ public class ConcertResourceUtils {
     public static User authenticate(EntityManager em, Cookie cookie) throws Exception {
         LOGGER.info("Searching cookie " + cookie.getValue());
         String token = cookie.getValue();
-        User user;
-        TypedQuery<User> query = em
-                .createQuery("select u from User u where u.token=:token", User.class)
-                .setParameter("token", token);
 
-        if (query.getResultList().isEmpty()) {
+        // Tokens seen recently resolve to a lazy reference, so no query is needed unless the user is actually read
+        Long userId = TokenCache.instance().getUserId(token);
+        if (userId != null) {
+            return em.getReference(User.class, userId);
+        }
+
+        List<User> users = em
+                .createNamedQuery(User.FIND_BY_TOKEN, User.class)
+                .setParameter("token", token)
+                .getResultList();
+
+        if (users.isEmpty()) {
             throw new Exception();
         }
 
-        user = query.getSingleResult();
+        // The token may be replaced by a login committing meanwhile; the cache then refuses to hold on to it
+        User user = users.get(0);
+        TokenCache.instance().put(token, user.getId());
         return user;
     }
 
+    /**
+     * As {@link #authenticate(EntityManager, Cookie)}, but fails with a 401 Unauthorized when the token is unknown.
+     */
+    public static User authenticateOrUnauthorized(EntityManager em, Cookie cookie) {
+        try {
+            return authenticate(em, cookie);
+        } catch (Exception e) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+    }
+
+    /**
+     * Closes an EntityManager, first rolling back any transaction an error left open. An EntityManager closed in the
+     * middle of a transaction stays attached to it, and would keep its pooled connection checked out.
+     */
+    public static void closeEntityManager(EntityManager em) {
+        try {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
     // Concert helper functions
     public static Concert findConcert(EntityManager em, Long id, String method) {
         Concert concert = em.find(Concert.class, id);
@@ -78,23 +137,15 @@ public class ConcertResourceUtils {
 
     public static List<Concert> findAllConcerts(EntityManager em) {
         return em
-                .createQuery("select c from Concert c", Concert.class)
+                .createNamedQuery(Concert.FIND_ALL, Concert.class)
                 .getResultList();
     }
 
     // Performer helper functions
-    public static PerformerDTO getDtoPerformer(EntityManager em, Long id, String method) {
-        Performer performer = em.find(Performer.class, id);
-        if (performer == null) {
-            entityExceptionDecisionManager(method);
-        }
-        return new PerformerDTO(performer.getId(), performer.getName(), performer.getImageName(), performer.getGenre(), performer.getBlurb());
-    }
-
     public static ArrayList<PerformerDTO> getAllDtoPerformers(EntityManager em) {
         ArrayList<PerformerDTO> dtoPerformers = new ArrayList<PerformerDTO>();
         List<Performer> performers = em
-                .createQuery("select p from Performer p", Performer.class)
+                .createNamedQuery(Performer.FIND_ALL, Performer.class)
                 .getResultList();
 
         for (Performer performer : performers) {
@@ -105,43 +156,97 @@ public class ConcertResourceUtils {
 
     // Seat helper functions
     public static ArrayList<Seat> findSeats(EntityManager em, BookingRequestDTO bReq) {
-        ArrayList<Seat> seats = new ArrayList<Seat>();
-        for (String seatLabel : bReq.getSeatLabels()) {
-            TypedQuery<Seat> seat = em
-                    .createQuery("select s from Seat s where s.label=:label and s.date=:date", Seat.class)
-                    .setLockMode(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
-                    .setParameter("label", seatLabel)
-                    .setParameter("date", bReq.getDate());
+        Set<String> labels = new HashSet<String>(bReq.getSeatLabels());
+        if (labels.isEmpty()) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
 
-            if (seat.getResultList().isEmpty()) {
-                throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        // Duplicate labels in a request would book the same seat twice
+        if (labels.size() != bReq.getSeatLabels().size()) {
+            throw new WebApplicationException(Response.Status.FORBIDDEN);
+        }
+
+        if (Config.SPARSE_SEAT_INVENTORY) {
+            // Only booked seats have rows, so create them. A seat booked meanwhile fails the unique date and label.
+            ArrayList<Seat> seats = new ArrayList<Seat>();
+            for (String seatLabel : bReq.getSeatLabels()) {
+                if (TheatreLayout.indexOf(seatLabel) < 0) {
+                    throw new WebApplicationException(Response.Status.BAD_REQUEST);
+                }
+                Seat seat = TheatreLayout.createBookedSeat(seatLabel, bReq.getDate());
+                em.persist(seat);
+                seats.add(seat);
             }
+            try {
+                em.flush();
+            } catch (PersistenceException e) {
+                throw translateSeatConflict(e);
+            }
+            return seats;
+        }
+
+        // Resolve and lock every requested seat in one statement rather than one query per label
+        List<Seat> found = em
+                .createNamedQuery(Seat.FIND_BY_LABELS, Seat.class)
+                .setLockMode(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+                .setParameter("labels", labels)
+                .setParameter("date", bReq.getDate())
+                .getResultList();
+
+        if (found.size() != labels.size()) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
 
-            if (seat.getSingleResult().getBookingStatus()) {
+        Map<String, Seat> seatsByLabel = new HashMap<String, Seat>();
+        for (Seat seat : found) {
+            if (seat.getBookingStatus()) {
                 throw new WebApplicationException(Response.Status.FORBIDDEN);
             }
+            seatsByLabel.put(seat.getLabel(), seat);
+        }
 
-            seat.getSingleResult().setBookingStatus(true);
-            seats.add(seat.getSingleResult());
+        // Keep the seats in the order they were requested
+        ArrayList<Seat> seats = new ArrayList<Seat>();
+        for (String seatLabel : bReq.getSeatLabels()) {
+            Seat seat = seatsByLabel.get(seatLabel);
+            seat.setBookingStatus(true);
+            seats.add(seat);
         }
         return seats;
     }
 
-    public static double getAvailableSeats(EntityManager em, Booking booking) {
-        List<Seat> availableSeatsQuery = em
-                .createQuery("select s from Seat s where s.date=:date and s.isBooked=:status", Seat.class)
-                .setParameter("date", booking.getDate())
-                .setParameter("status", false)
-                .getResultList();
-        return availableSeatsQuery.size();
+    /**
+     * Returns a 403 Forbidden if the exception was caused by a unique constraint violation, which in sparse mode means
+     * another booking inserted a row for one of the seats first. Any other exception is returned unchanged.
+     */
+    public static RuntimeException translateSeatConflict(RuntimeException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                return new WebApplicationException(Response.Status.FORBIDDEN);
+            }
+        }
+        return e;
     }
 
-    public static double getTotalSeats(EntityManager em, Booking booking) {
-        List<Seat> totalSeatsQuery = em
-                .createQuery("select s from Seat s where s.date=:date", Seat.class)
-                .setParameter("date", booking.getDate())
-                .getResultList();
-        return totalSeatsQuery.size();
+    /**
+     * Tells subscribers and seat listeners about seats that have just been booked for a concert date. Must only be
+     * called once the bookings have been committed.
+     */
+    public static void publishBookedSeats(long concertId, LocalDateTime date, List<String> bookedLabels) {
+        // Counters are maintained by the inventory, so no seats need to be loaded to work out what is left
+        DateInventory inventory = SeatInventory.instance().get(date);
+        int availableSeats = inventory.getAvailableCount();
+        int totalSeats = inventory.getTotalCount();
+
+        // Check seat amount left and push to specific subscriptions
+        int percentageOfSeatsFree = (availableSeats * 100) / totalSeats;
+
+        ConcertInfoNotificationDTO concertNotificationDTO = new ConcertInfoNotificationDTO(availableSeats);
+
+        List<Subscriber> triggered = SubscriptionRegistry.instance().removeTriggered(concertId, date, percentageOfSeatsFree);
+        NotificationDispatcher.instance().dispatch(triggered, concertNotificationDTO);
+
+        SeatEventBroadcaster.instance().publish(inventory, bookedLabels);
     }
 
     // Utility functions
@@ -154,22 +259,87 @@ public class ConcertResourceUtils {
         }
     }
 
+    /**
+     * Builds a response from a pre-serialised body, in the format the client's Accept header asks for. If the client
+     * already holds the same body, compressed or not (its If-None-Match header matches the ETag of either form), a
+     * 304 Not Modified is returned instead.
+     */
+    public static Response cachedResponse(Request request, CachedResponse cached) {
+        return cachedResponse(request, cached, null);
+    }
+
+    /**
+     * As {@link #cachedResponse(Request, CachedResponse)}, for one page of a paginated list. When there are more
+     * results a Link header points at the next page.
+     */
+    public static Response cachedResponse(Request request, CachedResponse cached, URI next) {
+        MediaType type = WireFormats.select(request);
+        EntityTag tag = cached.getEntityTag(type);
+        Response.ResponseBuilder builder = request.evaluatePreconditions(tag);
+        if (builder == null && cached.getGzipBody(type) != null) {
+            EntityTag gzipTag = GzipEncoding.gzipTag(tag);
+            builder = request.evaluatePreconditions(gzipTag);
+            if (builder != null) {
+                tag = gzipTag;
+            }
+        }
+
+        boolean notModified = builder != null;
+        if (!notModified) {
+            // The encoding is settled by GzipEncoding, which picks whichever of the two bodies the client accepts and
+            // tags it to match
+            builder = Response.ok(new PrecompressedEntity(cached.getBody(type), cached.getGzipBody(type)), type);
+        }
+        if (next != null) {
+            builder.link(next, "next");
+        }
+        builder.tag(tag).variants(WireFormats.VARIANTS);
+        if (notModified) {
+            // GzipEncoding only adds this to responses with a body, but a 304 must vary on the same headers
+            builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds a response for one page of a paginated list. When there are more results a Link header points at the
+     * next page.
+     */
+    public static Response pagedResponse(Object page, URI next) {
+        Response.ResponseBuilder builder = Response.ok(page);
+        if (next != null) {
+            builder.link(next, "next");
+        }
+        return builder.build();
+    }
+
+    /**
+     * Checks the page size asked for by a paginated request. A 400 Bad Request is thrown when it is outside
+     * 1 .. {@link Config#MAX_PAGE_SIZE}.
+     */
+    public static void checkPageLimit(int limit) {
+        if (limit < 1 || limit > Config.MAX_PAGE_SIZE) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Returns the URI of the page following one that ended with the given key, i.e. the request URI with its after
+     * parameter replaced by that key.
+     */
+    public static URI nextPageUri(UriInfo uriInfo, Object lastKey) {
+        return uriInfo.getRequestUriBuilder().replaceQueryParam("after", lastKey).build();
+    }
+
     public static TypedQuery<Seat> seatStatusDecisionManager(EntityManager em, BookingStatus bookingStatus, LocalDateTime date) {
-        switch (bookingStatus) {
-            case Booked:
-                return em
-                        .createQuery("select s from Seat s where s.date=:date and s.isBooked=:status", Seat.class)
-                        .setParameter("date", date)
-                        .setParameter("status", true);
-            case Unbooked:
-                return em
-                        .createQuery("select s from Seat s where s.date=:date and s.isBooked=:status", Seat.class)
-                        .setParameter("date", date)
-                        .setParameter("status", false);
-            default:
-                return em
-                        .createQuery("select s from Seat s where s.date=:date", Seat.class)
-                        .setParameter("date", date);
+        if (bookingStatus == BookingStatus.Any) {
+            return em
+                    .createNamedQuery(Seat.FIND_BY_DATE, Seat.class)
+                    .setParameter("date", date);
         }
+        return em
+                .createNamedQuery(Seat.FIND_BY_DATE_AND_STATUS, Seat.class)
+                .setParameter("date", date)
+                .setParameter("status", bookingStatus == BookingStatus.Booked);
     }
 }
@@ -3,14 +3,17 @@ package proj.concert.service.util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import proj.concert.service.common.Config;
 import proj.concert.service.domain.Concert;
 import proj.concert.service.domain.Seat;
+import proj.concert.service.inventory.SeatInventory;
 import proj.concert.service.services.ConcertApplication;
 import proj.concert.service.services.PersistenceManager;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -22,16 +25,20 @@ public class ConcertUtils {
     /**
      * This method will clear all seat and booking data from the database. Then, it will create all Seat objects for
      * all concerts and dates.
+     * <p>
+     * All of the seats are persisted in a single transaction. Seat ids come from a pooled sequence, so the inserts go
+     * to the database in JDBC batches.
      */
     public static void initConcerts() {
         LOGGER.debug("initConcerts(): Creating the Application");
+        long start = System.currentTimeMillis();
 
         EntityManager em = PersistenceManager.instance().createEntityManager();
         try {
 
             // Get all concerts
             em.getTransaction().begin();
-            TypedQuery<Concert> query = em.createQuery("select c from Concert c", Concert.class);
+            TypedQuery<Concert> query = em.createNamedQuery(Concert.FIND_ALL, Concert.class);
             List<Concert> concerts = query.getResultList();
 
             // Get all dates for all concerts
@@ -44,25 +51,46 @@ public class ConcertUtils {
 
             LOGGER.debug("initConcerts(): There are " + allDates.size() + " concert dates");
 
-            // For each concert date, create the seats for that date and persist them.
-            int seatCount = 0;
-            for (LocalDateTime date : allDates) {
+            // When only booked seats are stored there is nothing to create up front
+            int seatCount = Config.SPARSE_SEAT_INVENTORY ? 0 : createSeats(new ArrayList<>(allDates));
+            long seatsCreated = System.currentTimeMillis();
+
+            // Rebuild the in-memory seat inventory from the concert dates and the seats stored for them.
+            em.getTransaction().begin();
+            SeatInventory.instance().load(em);
+            em.getTransaction().commit();
+
+            LOGGER.info("initConcerts(): Created " + seatCount + " seats for " + allDates.size() + " dates in "
+                    + (seatsCreated - start) + "ms, loaded the seat inventory in "
+                    + (System.currentTimeMillis() - seatsCreated) + "ms");
+        } finally {
+            ConcertResourceUtils.closeEntityManager(em);
+        }
+    }
 
-                em.getTransaction().begin();
+    /**
+     * Persists the seats for every given date in one transaction, and returns how many seats were created.
+     */
+    private static int createSeats(List<LocalDateTime> dates) {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            int seatCount = 0;
+            em.getTransaction().begin();
+            for (LocalDateTime date : dates) {
                 Set<Seat> seatsForDate = TheatreLayout.createSeatsFor(date);
                 for (Seat s : seatsForDate) {
                     em.persist(s);
                     seatCount++;
                 }
-                em.getTransaction().commit();
 
                 // Ensures we aren't braking the EM with thousands of seat entities.
+                em.flush();
                 em.clear();
             }
-
-            LOGGER.debug("initConcerts(): Created " + seatCount + " seats!");
+            em.getTransaction().commit();
+            return seatCount;
         } finally {
-            em.close();
+            ConcertResourceUtils.closeEntityManager(em);
         }
     }
 }
@@ -0,0 +1,115 @@
+package proj.concert.service.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import proj.concert.service.jaxrs.WireFormats;
+import proj.concert.service.services.PersistenceManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Utility class for writing query results straight to a response as an array, in JSON or Smile (see
+ * {@link WireFormats}), without first collecting them into a list.
+ * <p>
+ * Rows are read through a forward-only cursor, and each row is mapped to a DTO and written as soon as it is read. The
+ * persistence context is cleared after every {@link #FETCH_SIZE} rows, so neither the entities nor the DTOs
+ * accumulate and memory use stays flat however many rows the query returns. Queries should not load associations
+ * row by row, as each would cost another statement; fetch them in the query instead, if need be as one row per
+ * element of a collection, and use {@link #streamGroupedQuery} to put each entity back together.
+ */
+public class JsonStreams {
+
+    /**
+     * Number of rows the JDBC driver fetches per round trip while the cursor is read.
+     */
+    private static final int FETCH_SIZE = 100;
+
+    /**
+     * Builds a response body that runs the given query and writes each result, mapped to a DTO, as an element of an
+     * array. The query runs in its own EntityManager, because the body is only written after the resource method has
+     * returned and closed the request's EntityManager.
+     *
+     * @param type   the format to write, as chosen by {@link WireFormats#select}
+     * @param query  creates the query to run against the given EntityManager
+     * @param mapper converts each result into the object to serialise
+     */
+    public static <T> StreamingOutput streamQuery(MediaType type, Function<EntityManager, TypedQuery<T>> query,
+                                                  Function<T, ?> mapper) {
+        return output -> {
+            EntityManager em = PersistenceManager.instance().createEntityManager();
+            try (JsonGenerator generator = WireFormats.mapperFor(type).getFactory().createGenerator(output)) {
+                em.getTransaction().begin();
+                generator.writeStartArray();
+
+                try (Stream<T> rows = query.apply(em).setHint("org.hibernate.fetchSize", FETCH_SIZE).getResultStream()) {
+                    Iterator<T> iterator = rows.iterator();
+                    for (int count = 1; iterator.hasNext(); count++) {
+                        generator.writeObject(mapper.apply(iterator.next()));
+                        if (count % FETCH_SIZE == 0) {
+                            em.clear();
+                        }
+                    }
+                }
+
+                generator.writeEndArray();
+                em.getTransaction().commit();
+            } finally {
+                ConcertResourceUtils.closeEntityManager(em);
+            }
+        };
+    }
+
+    /**
+     * As {@link #streamQuery}, for queries that return several consecutive rows per element, such as one row per
+     * seat of a booking. Consecutive rows with the same key are collected and mapped to a single element together,
+     * so the query must be ordered by that key.
+     *
+     * @param key    extracts the key of the element a row belongs to
+     * @param mapper converts the rows of one element into the object to serialise
+     */
+    public static <T, K> StreamingOutput streamGroupedQuery(MediaType type, Function<EntityManager, TypedQuery<T>> query,
+                                                            Function<T, K> key, Function<List<T>, ?> mapper) {
+        return output -> {
+            EntityManager em = PersistenceManager.instance().createEntityManager();
+            try (JsonGenerator generator = WireFormats.mapperFor(type).getFactory().createGenerator(output)) {
+                em.getTransaction().begin();
+                generator.writeStartArray();
+
+                try (Stream<T> rows = query.apply(em).setHint("org.hibernate.fetchSize", FETCH_SIZE).getResultStream()) {
+                    List<T> group = new ArrayList<T>();
+                    K groupKey = null;
+                    Iterator<T> iterator = rows.iterator();
+                    for (int count = 1; iterator.hasNext(); count++) {
+                        T row = iterator.next();
+                        K rowKey = key.apply(row);
+                        if (!group.isEmpty() && !rowKey.equals(groupKey)) {
+                            generator.writeObject(mapper.apply(group));
+                            group = new ArrayList<T>();
+                        }
+                        group.add(row);
+                        groupKey = rowKey;
+                        if (count % FETCH_SIZE == 0) {
+                            em.clear();
+                        }
+                    }
+                    if (!group.isEmpty()) {
+                        generator.writeObject(mapper.apply(group));
+                    }
+                }
+
+                generator.writeEndArray();
+                em.getTransaction().commit();
+            } finally {
+                ConcertResourceUtils.closeEntityManager(em);
+            }
+        };
+    }
+}
@@ -16,12 +16,30 @@ public class TheatreLayout {
     public static final int NUM_SEATS_PER_ROW = 12;
     public static final int NUM_ROWS = 10;
     public static final int NUM_SEATS_IN_THEATRE = NUM_SEATS_PER_ROW * NUM_ROWS;
+    // Prices carry the same scale as the PRICE column, so seats read back from the database compare equal to them
     public static final PriceBand[] PRICE_BANDS = {
-            new PriceBand("Platinum Seating", new BigDecimal(150), 5),
-            new PriceBand("Gold Seating", new BigDecimal(120), 3),
-            new PriceBand("Silver Seating", new BigDecimal(90), 2)
+            new PriceBand("Platinum Seating", new BigDecimal("150.00"), 5),
+            new PriceBand("Gold Seating", new BigDecimal("120.00"), 3),
+            new PriceBand("Silver Seating", new BigDecimal("90.00"), 2)
     };
 
+    // Flyweight tables: every seat label and price handed out is one of these shared instances
+    private static final String[] LABELS = new String[NUM_SEATS_IN_THEATRE];
+    private static final PriceBand[] ROW_BANDS = new PriceBand[NUM_ROWS];
+
+    static {
+        int rowNum = 0;
+        for (PriceBand band : PRICE_BANDS) {
+            for (int i = 0; i < band.numRows; i++, rowNum++) {
+                ROW_BANDS[rowNum] = band;
+            }
+        }
+        for (int index = 0; index < NUM_SEATS_IN_THEATRE; index++) {
+            char rowLabel = (char) ('A' + index / NUM_SEATS_PER_ROW);
+            LABELS[index] = ("" + rowLabel + (index % NUM_SEATS_PER_ROW + 1)).intern();
+        }
+    }
+
     /**
      * A utility function that creates all required {@link Seat} objects for a concert on the given date.
      *
@@ -32,40 +50,102 @@ public class TheatreLayout {
 
         Set<Seat> seats = new HashSet<>();
 
-        int rowsCreatedThisPricingBand = 0;
-        int currentPricingIndex = 0;
-        PriceBand currentPricing = PRICE_BANDS[currentPricingIndex];
-
-        for (int rowNum = 0; rowNum < NUM_ROWS; rowNum++) {
+        for (int index = 0; index < NUM_SEATS_IN_THEATRE; index++) {
+            seats.add(new Seat(LABELS[index], false, date, priceOf(index)));
+        }
 
-            char rowLabel = (char) ('A' + rowNum); // String.fromCharCode("A".charCodeAt(0) + rowNum);
+        return seats;
 
-            for (int seatNum = 1; seatNum <= NUM_SEATS_PER_ROW; seatNum++) {
+    }
 
-                String seatLabel = "" + rowLabel + seatNum;
+    /**
+     * Creates a booked {@link Seat} for a concert on the given date, with the layout's shared label and price. Used when only
+     * booked seats are stored, see {@link proj.concert.service.common.Config#SPARSE_SEAT_INVENTORY}.
+     *
+     * @param label a valid seat label
+     */
+    public static Seat createBookedSeat(String label, LocalDateTime date) {
+        int index = indexOf(label);
+        return new Seat(LABELS[index], true, date, priceOf(index));
+    }
 
-                seats.add(new Seat(
-                        seatLabel, false, date, currentPricing.price
-                ));
-            }
+    /**
+     * Converts a seat label (e.g. "C5") into its position in the theatre grid. Seats are numbered row by row, so
+     * "A1" is index 0 and "J12" is index {@link #NUM_SEATS_IN_THEATRE} - 1.
+     *
+     * @param label the seat label
+     * @return the seat index, or -1 if the label does not describe a seat in this theatre
+     */
+    public static int indexOf(String label) {
+        if (label == null || label.length() < 2 || label.length() > 3) {
+            return -1;
+        }
 
-            rowsCreatedThisPricingBand++;
-            if (rowsCreatedThisPricingBand == currentPricing.numRows) {
-                currentPricingIndex++;
-                currentPricing = currentPricingIndex < PRICE_BANDS.length ? PRICE_BANDS[currentPricingIndex] : null;
-                rowsCreatedThisPricingBand = 0;
-            }
+        int rowNum = label.charAt(0) - 'A';
+        int seatNum;
+        try {
+            seatNum = Integer.parseInt(label.substring(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
 
+        if (rowNum < 0 || rowNum >= NUM_ROWS || seatNum < 1 || seatNum > NUM_SEATS_PER_ROW) {
+            return -1;
         }
+        return rowNum * NUM_SEATS_PER_ROW + (seatNum - 1);
+    }
 
-        return seats;
+    /**
+     * Converts a seat index back into its label. This is the inverse of {@link #indexOf(String)}.
+     */
+    public static String labelOf(int index) {
+        return LABELS[index];
+    }
+
+    /**
+     * Returns the {@link PriceBand} that the row of the seat at the given index falls into.
+     */
+    public static PriceBand priceBandOf(int index) {
+        return ROW_BANDS[index / NUM_SEATS_PER_ROW];
+    }
+
+    /**
+     * Returns the price of the seat at the given index, based on which {@link PriceBand} its row falls into.
+     */
+    public static BigDecimal priceOf(int index) {
+        return priceBandOf(index).price;
+    }
 
+    /**
+     * Returns the price band with the given name, ignoring case, or null if there is no such band.
+     */
+    public static PriceBand priceBandNamed(String name) {
+        for (PriceBand band : PRICE_BANDS) {
+            if (band.name.equalsIgnoreCase(name)) {
+                return band;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of the first row in the given price band. Rows are numbered from 0, front to back.
+     */
+    public static int firstRowOf(PriceBand band) {
+        int rowNum = 0;
+        for (PriceBand current : PRICE_BANDS) {
+            if (current == band) {
+                return rowNum;
+            }
+            rowNum += current.numRows;
+        }
+        throw new IllegalArgumentException("Unknown price band " + band.name);
     }
 
     public static class PriceBand {
-        public String name;
-        public BigDecimal price;
-        public int numRows;
+        public final String name;
+        public final BigDecimal price;
+        public final int numRows;
 
         public PriceBand(String name, BigDecimal price, int numRows) {
             this.name = name;
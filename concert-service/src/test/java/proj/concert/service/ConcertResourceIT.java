@@ -1,33 +1,59 @@
 package proj.concert.service;
 
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
+import com.fasterxml.jackson.jaxrs.smile.SmileMediaTypes;
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
 import org.junit.*;
 
 import proj.concert.common.dto.*;
 import proj.concert.common.jackson.LocalDateTimeDeserializer;
 import proj.concert.common.types.Genre;
-
+import proj.concert.service.domain.Booking;
+import proj.concert.service.domain.Seat;
+import proj.concert.service.domain.User;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.Query;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ReaderInterceptor;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.*;
 
 public class ConcertResourceIT {
 
     private static final String WEB_SERVICE_URI = "http://localhost:10000/services/concert-service";
+
+    private static final List<String> preparedStatements = new CopyOnWriteArrayList<String>();
+    private static EntityManagerFactory schemaFactory;
     private Client client;
 
     /**
@@ -54,6 +80,17 @@ public class ConcertResourceIT {
         client = null;
     }
 
+    /**
+     * Shuts down the in-memory database used to check query plans, if a test started it.
+     */
+    @AfterClass
+    public static void closeSchemaFactory() {
+        if (schemaFactory != null) {
+            schemaFactory.close();
+            schemaFactory = null;
+        }
+    }
+
     /**
      * Tests that we can get a single concert from the web service, given its id.
      * <p>
@@ -173,6 +210,26 @@ public class ConcertResourceIT {
 
     }
 
+    /**
+     * Tests that concert summaries are returned with an ETag, and that presenting the ETag again in If-None-Match
+     * results in a 304 Not Modified with no body.
+     */
+    @Test
+    public void testGetConcertSummariesNotModified() {
+
+        Response response = client.target(WEB_SERVICE_URI + "/concerts/summaries").request().get();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        EntityTag eTag = response.getEntityTag();
+        assertNotNull(eTag);
+        response.close();
+
+        response = client.target(WEB_SERVICE_URI + "/concerts/summaries").request()
+                .header(HttpHeaders.IF_NONE_MATCH, eTag.toString()).get();
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        assertFalse(response.hasEntity());
+        response.close();
+    }
+
     /**
      * Tests that a 200 response is returned, along with the correct performer info, when requesting a performer with
      * a given id.
@@ -268,6 +325,39 @@ public class ConcertResourceIT {
         assertFalse(authCookie.getValue().isEmpty());
     }
 
+    /**
+     * Tests that logging in again replaces the user's token, so that a cookie holding the old token (which the
+     * service has already cached) is refused with a 401 error while the new one is accepted.
+     */
+    @Test
+    public void testReloginInvalidatesOldToken() {
+        Cookie oldCookie = login(client, "testuser", "pa55word").getCookies().get("auth");
+
+        Client otherClient = ClientBuilder.newClient();
+        try {
+            // Use the old token once so that it is cached
+            Response response = otherClient.target(WEB_SERVICE_URI + "/bookings")
+                    .request().cookie(oldCookie).get();
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            response.close();
+
+            Cookie newCookie = login(client, "testuser", "pa55word").getCookies().get("auth");
+            assertNotEquals(oldCookie.getValue(), newCookie.getValue());
+
+            response = otherClient.target(WEB_SERVICE_URI + "/bookings")
+                    .request().cookie(oldCookie).get();
+            assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), response.getStatus());
+            response.close();
+
+            response = otherClient.target(WEB_SERVICE_URI + "/bookings")
+                    .request().cookie(newCookie).get();
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            response.close();
+        } finally {
+            otherClient.close();
+        }
+    }
+
     /**
      * Tests that a 401 error is returned when attempting to book while not logged in, and that no booking is actually
      * made.
@@ -583,6 +673,400 @@ public class ConcertResourceIT {
 
     }
 
+    /**
+     * Tests that seats held by one user cannot be booked by another user, but can be booked by the user holding
+     * them, and that releasing a hold makes the seats available to everyone again.
+     */
+    @Test
+    public void testSeatHold() {
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        login(client, "testuser", "pa55word");
+
+        // Hold seats for user 1
+        BookingRequestDTO hReq = new BookingRequestDTO(1, date, Arrays.asList("C5", "C6"));
+        Response response = client.target(WEB_SERVICE_URI + "/holds").request().post(Entity.json(hReq));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        SeatHoldDTO hold = response.readEntity(SeatHoldDTO.class);
+        assertEquals(Arrays.asList("C5", "C6"), hold.getSeatLabels());
+
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            login(user2Client, "testuser2", "pa55word");
+
+            // User 2 can neither book nor release user 1's hold
+            response = attemptBooking(user2Client, 1, date, "C6", "C7");
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+            response = user2Client.target(WEB_SERVICE_URI + "/holds/" + hold.getId()).request().delete();
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+
+            // Once user 1 releases the hold, user 2 can book the seats
+            response = client.target(WEB_SERVICE_URI + "/holds/" + hold.getId()).request().delete();
+            assertEquals(Response.Status.NO_CONTENT.getStatusCode(), response.getStatus());
+            response = attemptBooking(user2Client, 1, date, "C6", "C7");
+            assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        } finally {
+            user2Client.close();
+        }
+
+        // User 1 can still book a seat they hold
+        response = client.target(WEB_SERVICE_URI + "/holds").request()
+                .post(Entity.json(new BookingRequestDTO(1, date, Arrays.asList("C5"))));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        response = attemptBooking(client, 1, date, "C5");
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+    }
+
+    /**
+     * Tests that when a booking fails because some of its seats are held by somebody else, the seats the user held
+     * beforehand stay held by them rather than being released.
+     */
+    @Test
+    public void testFailedBookingKeepsSeatHold() {
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        login(client, "testuser", "pa55word");
+
+        // User 1 holds C5
+        Response response = client.target(WEB_SERVICE_URI + "/holds").request()
+                .post(Entity.json(new BookingRequestDTO(1, date, Arrays.asList("C5"))));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            login(user2Client, "testuser2", "pa55word");
+
+            // User 2 holds C6
+            response = user2Client.target(WEB_SERVICE_URI + "/holds").request()
+                    .post(Entity.json(new BookingRequestDTO(1, date, Arrays.asList("C6"))));
+            assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+
+            // User 1 can't book both seats...
+            response = attemptBooking(client, 1, date, "C5", "C6");
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+
+            // ...but still holds C5, so user 2 can't book it either
+            response = attemptBooking(user2Client, 1, date, "C5");
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+        } finally {
+            user2Client.close();
+        }
+    }
+
+    /**
+     * Tests that when two users race to book the same seats, each seat is booked exactly once and every losing
+     * request is rejected with a 403 error rather than failing.
+     */
+    @Test
+    public void testConcurrentBookingsForSameSeats() throws InterruptedException, ExecutionException {
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        login(client, "testuser", "pa55word");
+
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            login(user2Client, "testuser2", "pa55word");
+
+            // Both users try to book each seat in row A at the same time
+            List<Future<Response>> responses = new ArrayList<>();
+            for (int num = 1; num <= 12; num++) {
+                BookingRequestDTO bReq = new BookingRequestDTO(1, date, Arrays.asList("A" + num));
+                responses.add(client.target(WEB_SERVICE_URI + "/bookings").request().async().post(Entity.json(bReq)));
+                responses.add(user2Client.target(WEB_SERVICE_URI + "/bookings").request().async().post(Entity.json(bReq)));
+            }
+
+            int created = 0;
+            for (Future<Response> response : responses) {
+                int status = response.get().getStatus();
+                if (status == Response.Status.CREATED.getStatusCode()) {
+                    created++;
+                } else {
+                    assertEquals(Response.Status.FORBIDDEN.getStatusCode(), status);
+                }
+            }
+            assertEquals(12, created);
+        } finally {
+            user2Client.close();
+        }
+
+        List<SeatDTO> bookedSeats = client.target(WEB_SERVICE_URI + "/seats/" + date.toString())
+                .queryParam("status", "Booked")
+                .request().get(new GenericType<List<SeatDTO>>() {
+                });
+        assertEquals(12, bookedSeats.size());
+    }
+
+    /**
+     * Tests that a batch of bookings is made in one request, with each booking succeeding or failing independently
+     * and the outcome of each reported in the order the bookings were submitted.
+     */
+    @Test
+    public void testMakeBatchBooking() {
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        login(client, "testuser", "pa55word");
+
+        List<BookingRequestDTO> bReqs = Arrays.asList(
+                new BookingRequestDTO(1, date, Arrays.asList("D1", "D2")),
+                new BookingRequestDTO(1, date, Arrays.asList("D3")),
+                new BookingRequestDTO(1, date, Arrays.asList("D2", "D4")),
+                new BookingRequestDTO(1, LocalDateTime.of(1999, 1, 1, 20, 0, 0), Arrays.asList("D5")));
+
+        List<BookingResultDTO> results = client.target(WEB_SERVICE_URI + "/bookings/batch")
+                .request().post(Entity.json(bReqs), new GenericType<List<BookingResultDTO>>() {
+                });
+
+        assertEquals(4, results.size());
+        assertEquals(Response.Status.CREATED.getStatusCode(), results.get(0).getStatus());
+        assertNotNull(results.get(0).getLocation());
+        assertEquals(Response.Status.CREATED.getStatusCode(), results.get(1).getStatus());
+        assertEquals(Response.Status.FORBIDDEN.getStatusCode(), results.get(2).getStatus());
+        assertNull(results.get(2).getLocation());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), results.get(3).getStatus());
+
+        List<BookingDTO> bookings = client.target(WEB_SERVICE_URI + "/bookings")
+                .request().get(new GenericType<List<BookingDTO>>() {
+                });
+        assertEquals(2, bookings.size());
+    }
+
+    /**
+     * Tests that a 400 error is returned for a batch of more than 100 bookings, and that none of them are made.
+     */
+    @Test
+    public void testMakeOversizedBatchBooking() {
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        login(client, "testuser", "pa55word");
+
+        List<BookingRequestDTO> bReqs = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            bReqs.add(new BookingRequestDTO(1, date, Arrays.asList("A1")));
+        }
+
+        Response response = client.target(WEB_SERVICE_URI + "/bookings/batch").request().post(Entity.json(bReqs));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+
+        List<BookingDTO> bookings = client.target(WEB_SERVICE_URI + "/bookings")
+                .request().get(new GenericType<List<BookingDTO>>() {
+                });
+        assertEquals(0, bookings.size());
+    }
+
+    /**
+     * Tests that asking for the best available seats holds the most central block in the front-most row of the
+     * requested price band, and that seats already taken are skipped.
+     */
+    @Test
+    public void testHoldBestAvailableSeats() {
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        login(client, "testuser", "pa55word");
+
+        // Take a seat from the middle of the first Gold row
+        Response response = attemptBooking(client, 1, date, "F6");
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+
+        SeatAllocationRequestDTO aReq = new SeatAllocationRequestDTO(1, date, 3, "Gold Seating");
+        response = client.target(WEB_SERVICE_URI + "/holds/best-available").request().post(Entity.json(aReq));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        assertEquals(Arrays.asList("F7", "F8", "F9"), response.readEntity(SeatHoldDTO.class).getSeatLabels());
+
+        // A whole row no longer fits in row F, so the next Gold row is used
+        aReq = new SeatAllocationRequestDTO(1, date, 12, "Gold Seating");
+        response = client.target(WEB_SERVICE_URI + "/holds/best-available").request().post(Entity.json(aReq));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        assertEquals("G1", response.readEntity(SeatHoldDTO.class).getSeatLabels().get(0));
+
+        // Unknown price bands are rejected
+        aReq = new SeatAllocationRequestDTO(1, date, 2, "Bronze Seating");
+        response = client.target(WEB_SERVICE_URI + "/holds/best-available").request().post(Entity.json(aReq));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
+    /**
+     * Tests that a user's bookings can be fetched a page at a time by following the next links, and that every
+     * booking is returned exactly once.
+     */
+    @Test
+    public void testGetUserBookingsInPages() {
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        login(client, "testuser", "pa55word");
+        for (int num = 1; num <= 5; num++) {
+            assertEquals(Response.Status.CREATED.getStatusCode(), attemptBooking(client, 1, date, "E" + num).getStatus());
+        }
+
+        List<BookingDTO> bookings = new ArrayList<>();
+        Response response = client.target(WEB_SERVICE_URI + "/bookings").queryParam("limit", 2).request().get();
+        while (true) {
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            List<BookingDTO> page = response.readEntity(new GenericType<List<BookingDTO>>() {
+            });
+            assertTrue(page.size() <= 2);
+            bookings.addAll(page);
+            if (response.getLink("next") == null) {
+                break;
+            }
+            response = client.target(response.getLink("next")).request().get();
+        }
+
+        assertEquals(5, bookings.size());
+        assertEquals("E5", bookings.get(4).getSeats().get(0).getLabel());
+
+        response = client.target(WEB_SERVICE_URI + "/bookings").queryParam("limit", 0).request().get();
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
+    /**
+     * Tests that concerts and seats can be fetched a page at a time.
+     */
+    @Test
+    public void testGetConcertsAndSeatsInPages() {
+        Response response = client.target(WEB_SERVICE_URI + "/concerts").queryParam("limit", 3).request().get();
+        List<ConcertDTO> concerts = response.readEntity(new GenericType<List<ConcertDTO>>() {
+        });
+        assertEquals(3, concerts.size());
+        assertNotNull(response.getLink("next"));
+
+        response = client.target(response.getLink("next")).request().get();
+        List<ConcertDTO> nextConcerts = response.readEntity(new GenericType<List<ConcertDTO>>() {
+        });
+        assertEquals(concerts.get(2).getId() + 1, (long) nextConcerts.get(0).getId());
+
+        response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00")
+                .queryParam("status", "Any").queryParam("limit", 10).queryParam("after", "A12")
+                .request().get();
+        List<SeatDTO> seats = response.readEntity(new GenericType<List<SeatDTO>>() {
+        });
+        assertEquals(10, seats.size());
+        assertEquals("B1", seats.get(0).getLabel());
+        assertTrue(response.getLink("next").getUri().toString().contains("after=B10"));
+    }
+
+    /**
+     * Tests that clients asking for Smile in their Accept header can log in, and read concerts and seats, in that
+     * format, while clients that ask for nothing in particular still get JSON.
+     */
+    @Test
+    public void testSmileContentNegotiation() {
+
+        client.register(JacksonSmileProvider.class);
+        MediaType smile = SmileMediaTypes.APPLICATION_JACKSON_SMILE_TYPE;
+
+        Response loginResponse = client.target(WEB_SERVICE_URI + "/login")
+                .request(smile).post(Entity.entity(new UserDTO("testuser", "pa55word"), smile));
+        assertEquals(Response.Status.OK.getStatusCode(), loginResponse.getStatus());
+
+        Response concertResponse = client.target(WEB_SERVICE_URI + "/concerts/1").request(smile).get();
+        assertEquals(smile, concertResponse.getMediaType());
+        assertEquals("PTX: The World Tour", concertResponse.readEntity(ConcertDTO.class).getTitle());
+
+        // The JSON and Smile forms of a cached response are different representations, so have different ETags
+        Response jsonResponse = client.target(WEB_SERVICE_URI + "/concerts/1").request().get();
+        assertEquals(MediaType.APPLICATION_JSON_TYPE, jsonResponse.getMediaType());
+        assertNotEquals(concertResponse.getEntityTag(), jsonResponse.getEntityTag());
+
+        List<SeatDTO> seats = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Unbooked")
+                .request(smile).get(new GenericType<List<SeatDTO>>() {
+                });
+        assertEquals(120, seats.size());
+    }
+
+    /**
+     * Tests that responses are gzip-compressed for clients that accept it, both when they come from the catalog cache
+     * and when they are built per request, and that small responses and clients that do not accept gzip are sent
+     * uncompressed.
+     */
+    @Test
+    public void testGzipCompression() {
+
+        // Decompress gzipped bodies before they are read
+        client.register((ReaderInterceptor) context -> {
+            if ("gzip".equals(context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))) {
+                context.setInputStream(new GZIPInputStream(context.getInputStream()));
+            }
+            return context.proceed();
+        });
+
+        Response concertsResponse = client.target(WEB_SERVICE_URI + "/concerts")
+                .request().acceptEncoding("gzip").get();
+        assertEquals("gzip", concertsResponse.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(8, concertsResponse.readEntity(new GenericType<List<ConcertDTO>>() {
+        }).size());
+
+        String seatsUri = WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=";
+        Response seatsResponse = client.target(seatsUri + "Unbooked").request().acceptEncoding("gzip").get();
+        assertEquals("gzip", seatsResponse.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(120, seatsResponse.readEntity(new GenericType<List<SeatDTO>>() {
+        }).size());
+
+        // No seats are booked, so the body is too small to be worth compressing
+        Response bookedResponse = client.target(seatsUri + "Booked").request().acceptEncoding("gzip").get();
+        assertNull(bookedResponse.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        bookedResponse.close();
+
+        Response identityResponse = client.target(WEB_SERVICE_URI + "/concerts").request().get();
+        assertNull(identityResponse.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        identityResponse.close();
+    }
+
+    /**
+     * Tests that a gzip-compressed body has its own ETag, that If-None-Match accepts the ETag of either form of the
+     * body, and that a 304 Not Modified varies on the same headers as the full response.
+     */
+    @Test
+    public void testGzipEntityTags() {
+
+        String concertsUri = WEB_SERVICE_URI + "/concerts";
+        Response identityResponse = client.target(concertsUri).request().get();
+        EntityTag identityTag = identityResponse.getEntityTag();
+        identityResponse.close();
+
+        Response gzipResponse = client.target(concertsUri).request().acceptEncoding("gzip").get();
+        assertEquals("gzip", gzipResponse.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        EntityTag gzipTag = gzipResponse.getEntityTag();
+        gzipResponse.close();
+
+        assertNotNull(identityTag);
+        assertNotNull(gzipTag);
+        assertNotEquals(identityTag, gzipTag);
+
+        for (EntityTag tag : Arrays.asList(identityTag, gzipTag)) {
+            Response response = client.target(concertsUri).request().acceptEncoding("gzip")
+                    .header(HttpHeaders.IF_NONE_MATCH, tag.toString()).get();
+            assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+            assertEquals(tag, response.getEntityTag());
+
+            String vary = String.join(",", response.getStringHeaders().get(HttpHeaders.VARY));
+            assertTrue(vary.contains(HttpHeaders.ACCEPT_ENCODING));
+            assertTrue(vary.matches("(?i).*\\baccept\\b(?!-).*"));
+            response.close();
+        }
+    }
+
+    /**
+     * Tests that each hot named query is answered from an index rather than by scanning its table.
+     */
+    @Test
+    public void testHotQueriesUseIndexes() {
+
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+
+        assertUsesIndex("IDX_SEATS_DATE_LABEL", Seat.FIND_BY_LABELS, query -> query
+                .setParameter("labels", Arrays.asList("A1", "A2"))
+                .setParameter("date", date));
+        // Either of the indexes on SEATS that lead with DATE will do
+        assertUsesIndex("IDX_SEATS_DATE_", Seat.FIND_BY_DATE, query -> query
+                .setParameter("date", date));
+        assertUsesIndex("IDX_SEATS_DATE_ISBOOKED", Seat.FIND_BY_DATE_AND_STATUS, query -> query
+                .setParameter("date", date)
+                .setParameter("status", true));
+        assertUsesIndex("IDX_USERS_TOKEN", User.FIND_BY_TOKEN, query -> query
+                .setParameter("token", "token"));
+        assertUsesIndex("IDX_USERS_USERNAME_PASSWORD", User.FIND_BY_CREDENTIALS, query -> query
+                .setParameter("username", "testuser")
+                .setParameter("password", "pa55word"));
+        assertUsesIndex("IDX_BOOKINGS_USER_ID", Booking.FIND_SEATS_BY_USER, query -> query
+                .setParameter("userId", 1L));
+        assertUsesIndex("IDX_BOOKINGS_USER_ID", Booking.FIND_BY_USER_AFTER, query -> query
+                .setParameter("userId", 1L)
+                .setParameter("after", 10L));
+    }
+
     /**
      * Tests that the booked seats for a particular concert on a particular date can be queried.
      */
@@ -660,6 +1144,12 @@ public class ConcertResourceIT {
                 assertTrue(labels.contains(label));
             }
         }
+
+        // Prices are served with the same two decimal places whether they come from memory or the database
+        for (SeatDTO seat : seats) {
+            assertEquals(2, seat.getPrice().scale());
+        }
+        assertEquals(new BigDecimal("150.00"), seats.get(0).getPrice());
     }
 
     // Tests for publish / subscribe functions - uncomment when ready.
@@ -827,6 +1317,56 @@ public class ConcertResourceIT {
         return attemptBooking(client, concertId, date, toBook.toArray(new String[0]));
     }
 
+    /**
+     * Runs a named query against a scratch in-memory database with the service's schema, and checks that the
+     * database plans the SQL Hibernate generates for it with the given index rather than a table scan.
+     */
+    private static void assertUsesIndex(String index, String queryName, Function<Query, Query> parameters) {
+        EntityManager em = schemaFactory().createEntityManager();
+        try {
+            preparedStatements.clear();
+            parameters.apply(em.createNamedQuery(queryName)).getResultList();
+
+            // Named queries start with their name as a comment
+            String sql = preparedStatements.stream()
+                    .filter(statement -> statement.startsWith("/* " + queryName + " */"))
+                    .findFirst()
+                    .orElseThrow(() -> new AssertionError("No SQL was prepared for " + queryName));
+
+            String plan = em.unwrap(Session.class).doReturningWork(connection -> {
+                try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql);
+                     ResultSet result = explain.executeQuery()) {
+                    result.next();
+                    return result.getString(1);
+                }
+            });
+
+            assertFalse(plan, plan.contains("tableScan"));
+            assertTrue(plan, plan.contains(index));
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Returns an EntityManagerFactory for the service's persistence unit backed by an in-memory database, which
+     * records the SQL of every statement it prepares in {@link #preparedStatements}.
+     */
+    private static synchronized EntityManagerFactory schemaFactory() {
+        if (schemaFactory == null) {
+            Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put("javax.persistence.jdbc.driver", "org.h2.Driver");
+            properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:concert-schema;DB_CLOSE_DELAY=-1");
+            properties.put("javax.persistence.jdbc.user", "sa");
+            properties.put("hibernate.session_factory.statement_inspector", (StatementInspector) sql -> {
+                preparedStatements.add(sql);
+                return sql;
+            });
+            schemaFactory = Persistence.createEntityManagerFactory("proj.concert", properties);
+        }
+        return schemaFactory;
+    }
+
     /**
      * Attempts a booking with the given details, and returns the server's response. Should already be logged in.
      */
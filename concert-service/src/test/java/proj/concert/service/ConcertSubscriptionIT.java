@@ -9,16 +9,21 @@ import proj.concert.common.types.Genre;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.sse.SseEventSource;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -194,9 +199,191 @@ public class ConcertSubscriptionIT {
 
     }
 
+    /**
+     * Tests that a client listening to the seat event stream for a date receives the current availability when it
+     * connects, followed by the seats booked on that date.
+     */
+    @Test
+    public void testSeatEventStream() throws InterruptedException {
+
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        BlockingQueue<SeatAvailabilityDTO> events = new LinkedBlockingQueue<>();
+        WebTarget target = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00/events");
+
+        try (SseEventSource source = SseEventSource.target(target).build()) {
+            source.register(event -> events.add(event.readData(SeatAvailabilityDTO.class, MediaType.APPLICATION_JSON_TYPE)));
+            source.open();
+
+            // The stream should start with the current availability
+            SeatAvailabilityDTO initial = events.poll(2, TimeUnit.SECONDS);
+            assertNotNull(initial);
+            assertEquals(120, initial.getNumSeatsRemaining());
+            assertTrue(initial.getBookedSeatLabels().isEmpty());
+
+            // Then report each booking as it is made
+            attemptBooking(client, 1, date, "C5", "C6");
+            SeatAvailabilityDTO update = events.poll(2, TimeUnit.SECONDS);
+            assertNotNull(update);
+            assertEquals(118, update.getNumSeatsRemaining());
+            assertEquals(Arrays.asList("C5", "C6"), update.getBookedSeatLabels());
+        }
+    }
+
+    /**
+     * Tests that a subscription whose conditions are never met is answered with a 204 No Content once it times out.
+     * The integration test service times subscriptions out after 10 seconds.
+     */
+    @Test
+    public void testSubscriptionTimeout() throws InterruptedException, ExecutionException, TimeoutException {
+
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        // Subscribe
+        Future<Response> future = subscribe(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0));
+
+        // Nothing gets booked, so the subscription should time out
+        Response response = future.get(15, TimeUnit.SECONDS);
+        assertEquals(Response.Status.NO_CONTENT.getStatusCode(), response.getStatus());
+    }
+
+    /**
+     * Tests that a 429 error is returned when a user tries to hold more than 20 outstanding subscriptions, and that
+     * the user's other subscriptions are unaffected.
+     */
+    @Test
+    public void testTooManySubscriptionsForUser() throws InterruptedException, ExecutionException {
+
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        // Subscribe one more time than allowed
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        List<Future<Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 21; i++) {
+            futures.add(subscribe(client, 1, date));
+        }
+
+        // Exactly one of them should be refused - the others should still be waiting
+        Thread.sleep(2000);
+        assertEquals(1, countCompleted(futures, Response.Status.TOO_MANY_REQUESTS));
+        assertEquals(20, countWaiting(futures));
+    }
+
+    /**
+     * Tests that a 503 error is returned when the service already holds as many subscriptions as it allows (30 for
+     * the integration tests), even if the user making the subscription has few of them.
+     */
+    @Test
+    public void testTooManySubscriptionsOverall() throws InterruptedException, ExecutionException {
+
+        // Log in as two users, neither of which goes over the per-user limit
+        login(client, "testuser", "pa55word");
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            login(user2Client, "testuser2", "pa55word");
+
+            LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+            List<Future<Response>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(subscribe(client, 1, date));
+            }
+            for (int i = 0; i < 11; i++) {
+                futures.add(subscribe(user2Client, 1, date));
+            }
+
+            // Between them they asked for one more than the service holds
+            Thread.sleep(2000);
+            assertEquals(1, countCompleted(futures, Response.Status.SERVICE_UNAVAILABLE));
+            assertEquals(30, countWaiting(futures));
+        } finally {
+            user2Client.close();
+        }
+    }
+
+    /**
+     * Tests that the subscriptions of a client which has disconnected are cleaned up once they are triggered, even
+     * though their notifications can no longer be delivered, so that they stop counting towards the user's limit.
+     */
+    @Test
+    public void testSubscriptionCleanupOnDisconnect() throws InterruptedException, ExecutionException {
+
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+
+        // Use up all of the user's subscriptions, then disconnect
+        Client disconnectingClient = ClientBuilder.newClient();
+        try {
+            login(disconnectingClient, "testuser", "pa55word");
+            List<Future<Response>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(subscribe(disconnectingClient, 1, date));
+            }
+            Thread.sleep(1000);
+            assertEquals(20, countWaiting(futures));
+        } finally {
+            disconnectingClient.close();
+        }
+
+        // Trigger the subscriptions by booking out rows A through G
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            login(user2Client, "testuser2", "pa55word");
+            attemptBooking(user2Client, 1, date, 'A', 'G');
+        } finally {
+            user2Client.close();
+        }
+
+        // The user should be able to subscribe again well within the 10 second timeout
+        login(client, "testuser", "pa55word");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            Future<Response> future = subscribe(client, 2, LocalDateTime.of(2019, 9, 12, 20, 0, 0));
+            try {
+                Response response = future.get(1, TimeUnit.SECONDS);
+                assertEquals(Response.Status.TOO_MANY_REQUESTS.getStatusCode(), response.getStatus());
+                assertTrue("Disconnected subscriptions were not cleaned up", System.currentTimeMillis() < deadline);
+            } catch (TimeoutException e) {
+                // Still waiting, so the subscription was accepted
+                break;
+            }
+        }
+    }
+
     // Helper methods
     // --------------------------------------------------------------------
 
+    /**
+     * Subscribes to be told when a concert date is half booked. Should already be logged in.
+     */
+    private static Future<Response> subscribe(Client client, long concertId, LocalDateTime date) {
+        ConcertInfoSubscriptionDTO subInfo = new ConcertInfoSubscriptionDTO(concertId, date, 50);
+        return client.target(WEB_SERVICE_URI + "/subscribe/concertInfo")
+                .request().async().post(Entity.json(subInfo));
+    }
+
+    /**
+     * Counts the subscriptions which have been answered with the given status.
+     */
+    private static long countCompleted(List<Future<Response>> futures, Response.Status status) throws InterruptedException, ExecutionException {
+        long count = 0;
+        for (Future<Response> future : futures) {
+            if (future.isDone() && future.get().getStatus() == status.getStatusCode()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the subscriptions which have not been answered yet.
+     */
+    private static long countWaiting(List<Future<Response>> futures) {
+        return futures.stream().filter(future -> !future.isDone()).count();
+    }
+
     /**
      * Helper method to log us in.
      */